@@ -17,10 +17,16 @@
 
 package edu.grinnell.glimmer.ushahidi;
 
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 /**
  * A simple representation of Ushahidi clients. Provides incidents in an
- * iterator style (but without using Iterators, so that novices can use it) and
- * as an array.
+ * iterator style (but without using Iterators, so that novices can use it),
+ * as an array, and as a stream.
  * 
  * @version 0.4.1 of 24 September 2014
  * @author Samuel A. Rebelsky
@@ -57,5 +63,63 @@ public interface UshahidiClient
   public UshahidiIncident nextIncident()
     throws Exception;
 
+  /**
+   * Get a spliterator over the unseen incidents.  Any incident the
+   * spliterator provides counts as seen.  The default implementation
+   * uses hasMoreIncidents and nextIncident, and so cannot be split.
+   *
+   * @return
+   *            A spliterator that provides the unseen incidents, in
+   *            no specified order.  If an incident cannot be obtained,
+   *            tryAdvance (and so forEachRemaining) throws an
+   *            IllegalStateException whose cause is the failure.
+   */
+  public default Spliterator<UshahidiIncident> spliterator()
+  {
+    return new Spliterators.AbstractSpliterator<UshahidiIncident>(
+        Long.MAX_VALUE, Spliterator.NONNULL)
+      {
+        public boolean tryAdvance(Consumer<? super UshahidiIncident> action)
+        {
+          UshahidiIncident incident;
+          if (!hasMoreIncidents())
+            return false;
+          try
+            {
+              incident = nextIncident();
+            } // try
+          catch (Exception e)
+            {
+              throw new IllegalStateException("Could not get an incident",
+                                              e);
+            } // catch (Exception)
+          action.accept(incident);
+          return true;
+        } // tryAdvance(Consumer)
+      }; // new AbstractSpliterator
+  } // spliterator()
+
+  /**
+   * Get a sequential stream of the unseen incidents.
+   *
+   * @return
+   *            A stream built from <code>spliterator()</code>.
+   */
+  public default Stream<UshahidiIncident> stream()
+  {
+    return StreamSupport.stream(this.spliterator(), false);
+  } // stream()
+
+  /**
+   * Get a possibly parallel stream of the unseen incidents.
+   *
+   * @return
+   *            A parallel stream built from <code>spliterator()</code>.
+   */
+  public default Stream<UshahidiIncident> parallelStream()
+  {
+    return StreamSupport.stream(this.spliterator(), true);
+  } // parallelStream()
+
 } // UshahidiClient
 
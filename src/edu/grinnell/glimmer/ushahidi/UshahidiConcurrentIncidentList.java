@@ -0,0 +1,295 @@
+/**
+ * Copyright (c) 2014 Samuel A. Rebelsky.  All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.grinnell.glimmer.ushahidi;
+
+import java.util.Collection;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A list of incidents that may be shared by several threads.  Any number
+ * of threads may add incidents while any number of others call
+ * nextIncident, and each incident is returned by nextIncident exactly
+ * once.
+ *
+ * @version 0.1.0 of 25 September 2014
+ * @author Samuel A. Rebelsky
+ */
+public class UshahidiConcurrentIncidentList
+    implements UshahidiClient
+{
+  // +-------+----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * Incidents live in a sequence of chunks that never move once they
+   * are created.  Chunk k holds FIRST_CHUNK_SIZE * 2^k incidents, so
+   * MAX_CHUNKS chunks are enough for any int index and we never need
+   * to copy incidents when the list grows.
+   *
+   * There are three counters.  reserved is the number of slots that
+   * adders have claimed, published is the number of slots that have
+   * been filled, and claimed is the number of slots that nextIncident
+   * has handed out.  An adder reserves a slot, fills it, and then
+   * waits for the slots before it to be published before publishing
+   * its own, so the slots below published are always filled.
+   * nextIncident claims a slot below published with compareAndSet,
+   * so no two callers get the same incident and nobody waits for
+   * anybody else.
+   *
+   * The spliterator claims slots the same way.  It cannot use
+   * hasMoreIncidents and then nextIncident, since another consumer
+   * may take the last incident between the two calls.
+   */
+
+  // +-----------+------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The base-two log of the size of the first chunk.
+   */
+  static final int FIRST_CHUNK_BITS = 5;
+
+  /**
+   * The size of the first chunk.
+   */
+  static final int FIRST_CHUNK_SIZE = 1 << FIRST_CHUNK_BITS;
+
+  /**
+   * The number of chunks needed to cover every non-negative int index.
+   */
+  static final int MAX_CHUNKS = 32 - FIRST_CHUNK_BITS;
+
+  // +--------+---------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The chunks of incidents.  Chunks are created as needed.
+   */
+  AtomicReferenceArray<AtomicReferenceArray<UshahidiIncident>> chunks;
+
+  /**
+   * The number of slots that have been reserved by addIncident.
+   */
+  AtomicInteger reserved;
+
+  /**
+   * The number of slots that have been filled.
+   */
+  AtomicInteger published;
+
+  /**
+   * The number of slots that have been handed out by nextIncident.
+   */
+  AtomicInteger claimed;
+
+  // +--------------+---------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new list with no incidents.
+   */
+  public UshahidiConcurrentIncidentList()
+  {
+    this.chunks =
+        new AtomicReferenceArray<AtomicReferenceArray<UshahidiIncident>>(
+            MAX_CHUNKS);
+    this.reserved = new AtomicInteger(0);
+    this.published = new AtomicInteger(0);
+    this.claimed = new AtomicInteger(0);
+  } // UshahidiConcurrentIncidentList()
+
+  /**
+   * Create a new list with a specified set of incidents.
+   *
+   * @param incidents
+   *            The incidents to populate the list.
+   */
+  public UshahidiConcurrentIncidentList(
+      Collection<UshahidiIncident> incidents)
+  {
+    this();
+    for (UshahidiIncident incident : incidents)
+      this.addIncident(incident);
+  } // UshahidiConcurrentIncidentList(Collection<UshahidiIncident>)
+
+  // +---------+--------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Determine which chunk holds slot i.
+   */
+  static int chunkOf(int i)
+  {
+    int pos = i + FIRST_CHUNK_SIZE;
+    return (31 - Integer.numberOfLeadingZeros(pos)) - FIRST_CHUNK_BITS;
+  } // chunkOf(int)
+
+  /**
+   * Determine where slot i falls within its chunk.
+   */
+  static int offsetOf(int i)
+  {
+    int pos = i + FIRST_CHUNK_SIZE;
+    return pos ^ Integer.highestOneBit(pos);
+  } // offsetOf(int)
+
+  /**
+   * Get chunk k, creating it if nobody has yet done so.
+   */
+  AtomicReferenceArray<UshahidiIncident> chunk(int k)
+  {
+    AtomicReferenceArray<UshahidiIncident> chunk = this.chunks.get(k);
+    if (chunk == null)
+      {
+        this.chunks.compareAndSet(k, null,
+            new AtomicReferenceArray<UshahidiIncident>(FIRST_CHUNK_SIZE << k));
+        chunk = this.chunks.get(k);
+      } // if the chunk does not yet exist
+    return chunk;
+  } // chunk(int)
+
+  /**
+   * Get the incident in slot i, which must already be published.
+   */
+  UshahidiIncident get(int i)
+  {
+    return this.chunks.get(chunkOf(i)).get(offsetOf(i));
+  } // get(int)
+
+  /**
+   * Claim the next unseen incident.
+   *
+   * @return
+   *            An incident that no other call has returned, or null if
+   *            no incidents remain.
+   */
+  UshahidiIncident claim()
+  {
+    while (true)
+      {
+        int next = this.claimed.get();
+        if (next >= this.published.get())
+          return null;
+        if (this.claimed.compareAndSet(next, next + 1))
+          return this.get(next);
+      } // while
+  } // claim()
+
+  // +------------------------+-----------------------------------------
+  // | UshahidiClient Methods |
+  // +------------------------+
+
+  /**
+   * Get all of the incidents that have been added to this list.
+   *
+   * @return
+   *            An array of incidents, in the order they were added to
+   *            the list.
+   */
+  public UshahidiIncident[] getIncidents()
+  {
+    int size = this.published.get();
+    UshahidiIncident[] result = new UshahidiIncident[size];
+    for (int i = 0; i < size; i++)
+      result[i] = this.get(i);
+    return result;
+  } // getIncidents()
+
+  /**
+   * Determine if any unseen incidents remain.  With several consumers,
+   * another thread may claim the remaining incidents before this one
+   * calls nextIncident.
+   *
+   * @return true, if incidents remain; false, otherwise.
+   */
+  public boolean hasMoreIncidents()
+  {
+    return this.claimed.get() < this.published.get();
+  } // hasMoreIncidents()
+
+  /**
+   * Get the next unseen incident.  Safe to call from several threads.
+   *
+   * @return
+   *            An incident that no other call has returned.
+   * @exception Exception
+   *            If no incidents remain.
+   */
+  public UshahidiIncident nextIncident()
+    throws Exception
+  {
+    UshahidiIncident incident = this.claim();
+    if (incident == null)
+      throw new Exception("No incidents remain.");
+    return incident;
+  } // nextIncident()
+
+  /**
+   * Get a spliterator over the unseen incidents.  Safe to use from
+   * several threads at once, each with its own spliterator; between
+   * them, they provide each incident exactly once.
+   *
+   * @return
+   *            A spliterator that claims incidents as nextIncident does
+   *            and ends when none remain.
+   */
+  public Spliterator<UshahidiIncident> spliterator()
+  {
+    return new Spliterators.AbstractSpliterator<UshahidiIncident>(
+        Long.MAX_VALUE, Spliterator.NONNULL | Spliterator.CONCURRENT)
+      {
+        public boolean tryAdvance(Consumer<? super UshahidiIncident> action)
+        {
+          UshahidiIncident incident = claim();
+          if (incident == null)
+            return false;
+          action.accept(incident);
+          return true;
+        } // tryAdvance(Consumer)
+      }; // new AbstractSpliterator
+  } // spliterator()
+
+  // +--------------------+---------------------------------------------
+  // | Additional Methods |
+  // +--------------------+
+
+  /**
+   * Add an incident to the end of the list.  Safe to call from several
+   * threads, although adders wait for one another to publish in order.
+   *
+   * @param incident
+   *            The incident to add.  Must not be null.
+   */
+  public void addIncident(UshahidiIncident incident)
+  {
+    int slot = this.reserved.getAndIncrement();
+    this.chunk(chunkOf(slot)).set(offsetOf(slot), incident);
+    while (!this.published.compareAndSet(slot, slot + 1))
+      Thread.yield();
+  } // addIncident(UshahidiIncident)
+
+} // UshahidiConcurrentIncidentList
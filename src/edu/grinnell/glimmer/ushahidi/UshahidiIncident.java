@@ -18,14 +18,21 @@
 
 package edu.grinnell.glimmer.ushahidi;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.text.ParseException;
 import java.time.format.DateTimeFormatter;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Set;
 
 import org.json.JSONException;
+import org.json.JSONExtractor;
 import org.json.JSONObject;
 import org.json.JSONArray;
+import org.json.JSONString;
+import org.json.JSONTokener;
 
 /**
  * A simple representation of Ushahidi incidents. Currently gives access only to
@@ -36,6 +43,7 @@ import org.json.JSONArray;
  * @author Daniel Torres
  */
 public class UshahidiIncident
+    implements JSONString
 {
 
   // +-----------+------------------------------------------------------
@@ -135,6 +143,12 @@ public class UshahidiIncident
    */
   JSONObject customFields = null;
 
+  /**
+   * The fields that were read from the server, or null if all of them
+   * were.
+   */
+  Set<UshahidiIncidentField> fields = null;
+
   // +--------------+---------------------------------------------------
   // | Constructors |
   // +--------------+
@@ -196,82 +210,30 @@ public class UshahidiIncident
    */
   UshahidiIncident(JSONObject input) throws JSONException, ParseException
   {
-    JSONObject incident = input.getJSONObject("incident");
-
-    // Get basic fields
-    this.id = incident.getInt("incidentid");
-    this.title = incident.getString("incidenttitle");
-    this.description = incident.getString("incidentdescription");
-    this.date =
-        LocalDateTime.parse(incident.getString("incidentdate"), dateInputFormat);
-    this.mode = incident.getInt("incidentmode");
-    this.active = incident.getInt("incidentactive");
-    this.verified = incident.getInt("incidentverified");
-
-    // Not all incidents have locations, or may have only partial
-    // information on the location. The following sections deal
-    // with most location issues.
-    int locationId;
-    String locationName;
-    double locationLatitude;
-    double locationLongitude;
-
-    try
-      {
-        locationName = incident.getString("locationname");
-      }
-    catch (Exception e)
-      {
-        locationName = "";
-      }
-    try
-      {
-        locationId = incident.getInt("incidentid");
-        if (locationId == 0)
-          locationId = UshahidiLocation.INVALID_LOCATION_ID;
-      }
-    catch (Exception e)
-      {
-        locationId = UshahidiLocation.INVALID_LOCATION_ID;
-      } // catch (Exception)
-    try
-      {
-        locationLatitude = incident.getDouble("locationlatitude");
-      }
-    catch (Exception e)
-      {
-        locationLatitude = UshahidiLocation.NO_LATITUDE;
-      } // catch (Exception)
-    try
-      {
-        locationLongitude = incident.getDouble("locationlongitude");
-      }
-    catch (Exception e)
-      {
-        locationLongitude = UshahidiLocation.NO_LONGITUDE;
-      } // catch (Exception)
-
-    this.location =
-        new UshahidiLocation(locationId, locationName, locationLatitude,
-                             locationLongitude);
+    this(input, null);
+  } // UshahidiIncident(JSONObject)
 
-    // Get the categories.
-    JSONArray categories = input.getJSONArray("categories");
-    int len = categories.length();
-    this.categories = new UshahidiCategory[len];
-    for (int i = 0; i < len; i++)
-      {
-        JSONObject category = 
-            categories.getJSONObject(i).getJSONObject("category");
-        try 
-          {
-            this.categories[i] = new UshahidiCategory(category.getInt("id"),
-                category.getString("title"));
-          } // try
-        catch (Exception e)
-          {
-          } // catch
-      } // for
+  /**
+   * Create an incident from a partially parsed JSON response, keeping
+   * only some of its fields.  hasField reports the other fields as
+   * missing, and they keep their default values.
+   *
+   * @param input
+   *            A piece JSON code returned by the Ushahidi Web API
+   *            and then parsed by the standard JSON parser.
+   * @param fields
+   *            The fields to keep, or null for all of them.
+   * @exception JSONException
+   *                if it is unable to get one of the fields to keep from
+   *                the JSON object.
+   */
+  UshahidiIncident(JSONObject input, Set<UshahidiIncidentField> fields)
+    throws JSONException
+  {
+    this.fields = fields;
+    this.readIncident(input.getJSONObject("incident"));
+    if (this.hasField(UshahidiIncidentField.CATEGORIES))
+      this.categories = readCategories(input.getJSONArray("categories"));
 
     // Get the comments.
     //   STUB! 
@@ -282,12 +244,14 @@ public class UshahidiIncident
 
     // Get other compound fields. Right now, we don't reveal these to 
     // the client.
-    this.media = input.getJSONArray("media");
+    if (this.hasField(UshahidiIncidentField.MEDIA))
+      this.media = input.getJSONArray("media");
 
     // Get the error messages
     try
       {
-        error = input.getJSONArray("error");
+        if (this.hasField(UshahidiIncidentField.ERROR))
+          error = input.getJSONArray("error");
       } // try{error = input.getJSONArray("error")}
     catch (JSONException e)
       {
@@ -297,13 +261,206 @@ public class UshahidiIncident
     // Get the array of custom fields
     try
       {
-        customFields = input.getJSONObject("customfields");
+        if (this.hasField(UshahidiIncidentField.CUSTOM_FIELDS))
+          customFields = input.getJSONObject("customfields");
       } // try
     catch (JSONException e)
       {
         customFields = null;
       } // catch(JSONException e)
-  } // UshahidiIncident(JSONObject)
+  } // UshahidiIncident(JSONObject, Set<UshahidiIncidentField>)
+
+  // +----------------+-------------------------------------------------
+  // | Static Helpers |
+  // +----------------+
+
+  /**
+   * Convert the categories of an incident.
+   */
+  static UshahidiCategory[] readCategories(JSONArray categories)
+  {
+    int len = categories.length();
+    UshahidiCategory[] result = new UshahidiCategory[len];
+    for (int i = 0; i < len; i++)
+      {
+        JSONObject category = 
+            categories.getJSONObject(i).getJSONObject("category");
+        try 
+          {
+            result[i] = new UshahidiCategory(category.getInt("id"),
+                category.getString("title"));
+          } // try
+        catch (Exception e)
+          {
+          } // catch
+      } // for
+    return result;
+  } // readCategories(JSONArray)
+
+  /**
+   * Read an array of incidents directly from a tokener, keeping only
+   * some of their fields.  The values of the other fields are skipped
+   * by the tokener without being built.
+   *
+   * @param x
+   *            A tokener positioned at an array of incidents, in the
+   *            layout of the Ushahidi Web API.
+   * @param fields
+   *            The fields to keep.
+   * @exception JSONException
+   *                if the JSON is malformed or one of the incidents lacks
+   *                one of the fields.
+   */
+  static UshahidiIncident[] readArray(JSONTokener x,
+                                      Set<UshahidiIncidentField> fields)
+    throws JSONException
+  {
+    // Figure out which keys we need.  Those of the simple fields are
+    // inside the "incident" object; the others are at the top level.
+    ArrayList<String> keys = new ArrayList<String>();
+    ArrayList<String> pointers = new ArrayList<String>();
+    for (UshahidiIncidentField field : fields)
+      {
+        for (String key : field.keys)
+          {
+            keys.add(key);
+            pointers.add((field.inner ? "/incident/" : "/") + key);
+          } // for
+      } // for
+    JSONExtractor extractor =
+        new JSONExtractor(pointers.toArray(new String[pointers.size()]));
+
+    // Read the incidents
+    ArrayList<UshahidiIncident> incidents = new ArrayList<UshahidiIncident>();
+    if (x.nextClean() != '[')
+      throw x.syntaxError("A JSONArray text must start with '['");
+    if (x.nextClean() == ']')
+      return new UshahidiIncident[0];
+    x.back();
+    while (true)
+      {
+        Object[] values = extractor.extractValue(x);
+        JSONObject input = new JSONObject();
+        JSONObject incident = new JSONObject();
+        for (int i = 0; i < values.length; i++)
+          {
+            if (values[i] != null)
+              (pointers.get(i).startsWith("/incident/") ? incident : input)
+                  .put(keys.get(i), values[i]);
+          } // for
+        input.put("incident", incident);
+        incidents.add(new UshahidiIncident(input, fields));
+
+        switch (x.nextClean())
+          {
+            case ',':
+              if (x.nextClean() == ']')
+                return incidents.toArray(new UshahidiIncident[0]);
+              x.back();
+              break;
+            case ']':
+              return incidents.toArray(new UshahidiIncident[0]);
+            default:
+              throw x.syntaxError("Expected a ',' or ']'");
+          } // switch
+      } // while
+  } // readArray(JSONTokener, Set<UshahidiIncidentField>)
+
+  // +---------+--------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Read the simple fields of an incident from the "incident" object.
+   */
+  void readIncident(JSONObject incident)
+    throws JSONException
+  {
+    // Get basic fields
+    if (this.hasField(UshahidiIncidentField.ID))
+      this.id = incident.getInt("incidentid");
+    if (this.hasField(UshahidiIncidentField.TITLE))
+      this.title = incident.getString("incidenttitle");
+    if (this.hasField(UshahidiIncidentField.DESCRIPTION))
+      this.description = incident.getString("incidentdescription");
+    // UshahidiIncidentWriter leaves out the date of an incident that
+    // has none, so a missing date stays null.
+    if (this.hasField(UshahidiIncidentField.DATE))
+      {
+        String date = incident.optString("incidentdate", null);
+        if (date != null)
+          this.date = LocalDateTime.parse(date, dateInputFormat);
+      } // if (this.hasField(UshahidiIncidentField.DATE))
+    if (this.hasField(UshahidiIncidentField.MODE))
+      this.mode = incident.getInt("incidentmode");
+    if (this.hasField(UshahidiIncidentField.ACTIVE))
+      this.active = incident.getInt("incidentactive");
+    if (this.hasField(UshahidiIncidentField.VERIFIED))
+      this.verified = incident.getInt("incidentverified");
+
+    if (!this.hasField(UshahidiIncidentField.LOCATION)
+        && !this.hasField(UshahidiIncidentField.COORDINATES))
+      return;
+
+    // Not all incidents have locations, or may have only partial
+    // information on the location. The following sections deal
+    // with most location issues.  Keys that were not selected are
+    // missing entirely, so we check for them rather than paying for an
+    // exception each time.  An incident with none of the keys has no
+    // location (UshahidiIncidentWriter writes a null location that way).
+    if (!incident.has("locationid") && !incident.has("locationname")
+        && !incident.has("locationlatitude")
+        && !incident.has("locationlongitude"))
+      return;
+
+    int locationId = UshahidiLocation.INVALID_LOCATION_ID;
+    String locationName = "";
+    double locationLatitude = UshahidiLocation.NO_LATITUDE;
+    double locationLongitude = UshahidiLocation.NO_LONGITUDE;
+
+    if (incident.has("locationname"))
+      try
+        {
+          locationName = incident.getString("locationname");
+        }
+      catch (Exception e)
+        {
+          locationName = "";
+        }
+    if (incident.has("locationid"))
+      try
+        {
+          locationId = incident.getInt("locationid");
+          if (locationId == 0)
+            locationId = UshahidiLocation.INVALID_LOCATION_ID;
+        }
+      catch (Exception e)
+        {
+          locationId = UshahidiLocation.INVALID_LOCATION_ID;
+        } // catch (Exception)
+    if (incident.has("locationlatitude"))
+      try
+        {
+          locationLatitude = incident.getDouble("locationlatitude");
+        }
+      catch (Exception e)
+        {
+          locationLatitude = UshahidiLocation.NO_LATITUDE;
+        } // catch (Exception)
+    if (incident.has("locationlongitude"))
+      try
+        {
+          locationLongitude = incident.getDouble("locationlongitude");
+        }
+      catch (Exception e)
+        {
+          locationLongitude = UshahidiLocation.NO_LONGITUDE;
+        } // catch (Exception)
+
+    this.location =
+        new UshahidiLocation(locationId, locationName, locationLatitude,
+                             locationLongitude);
+  } // readIncident(JSONObject)
 
   // +-----------------+------------------------------------------------
   // | Local Utilities |
@@ -357,6 +514,27 @@ public class UshahidiIncident
            + sep + "Categories: " + Arrays.toString(this.categories) + "]";
   } // toString(String)
 
+  /**
+   * Convert the incident to JSON, in the layout used by the Ushahidi
+   * Web API.
+   *
+   * @return
+   *            A JSON object, as a string.
+   */
+  public String toJSONString()
+  {
+    StringWriter text = new StringWriter();
+    try
+      {
+        new UshahidiIncidentWriter(text).write(this);
+      } // try
+    catch (IOException e)
+      {
+        // Writing to a StringWriter does not fail.
+      } // catch (IOException)
+    return text.toString();
+  } // toJSONString()
+
   // +---------+--------------------------------------------------------
   // | Getters |
   // +---------+
@@ -439,6 +617,20 @@ public class UshahidiIncident
     return this.verified != 0;
   } // getVerified()
 
+  /**
+   * Determine whether the incident has a particular field.  Incidents
+   * read with a projection have only the fields in the projection; the
+   * others keep their default values.
+   *
+   * @return
+   *            true, if the field was read (or the incident was built
+   *            locally); false, if it was left out.
+   */
+  public boolean hasField(UshahidiIncidentField field)
+  {
+    return (this.fields == null) || this.fields.contains(field);
+  } // hasField(UshahidiIncidentField)
+
   /**
    * Get the location of the incident. 
    *
@@ -0,0 +1,673 @@
+/**
+ * Copyright (c) 2014 Samuel A. Rebelsky.  All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.grinnell.glimmer.ushahidi;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * A compact binary format for batches of incidents, for caching and
+ * replication.  Unlike the JSON and JSONzip formats, incidents are
+ * written straight from their fields and read straight back into
+ * them, with no JSON in between (except for media, errors, and custom
+ * fields, which are free-form JSON and are kept as JSON text).
+ *
+ * @version 0.1.0 of 25 September 2014
+ * @author Samuel A. Rebelsky
+ */
+public class UshahidiIncidentCodec
+{
+  // +-------+----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * A batch begins with the bytes 'U', 'I', 'C', and the version of
+   * the format, and then the number of incidents.  Every number is a
+   * varint: seven bits per byte, low bits first, with the high bit set
+   * on every byte but the last.  Numbers that may be negative are
+   * zigzag encoded first, so that small negative numbers stay small.
+   *
+   * Each incident is
+   *
+   *   flags    which of the optional parts follow (see the F_ constants)
+   *   id       the difference from the previous incident's id
+   *   title, description
+   *   date     the difference in seconds from the previous date in
+   *            the batch, shifted left one, with the low bit set if
+   *            a count of nanoseconds follows
+   *   mode, active, verified
+   *   location flags (see the L_ constants), id, name, and latitude
+   *            and longitude as multiples of 10^-7 degrees, or as
+   *            raw doubles if that would lose precision
+   *   categories  a count, then an id and name for each
+   *   comments    a count, then for each an id, the difference between
+   *            its incident and this incident, the author, the
+   *            description, and a date (preceded by 1) or a 0
+   *   media, error, custom fields  as JSON text
+   *   fields   the ordinals of the selected fields, as a bit set
+   *
+   * where only the parts named in the flags are present.  Null
+   * entries in the arrays of categories and comments are left out,
+   * as UshahidiIncidentWriter leaves them out.  Sorting a
+   * batch by id (or date) keeps the differences, and so the varints,
+   * small.
+   *
+   * Strings go through a string table.  A string is written as 0 for
+   * null, 1 followed by its length and UTF-8 bytes the first time it
+   * appears in the batch, or 2 plus its position in the table after
+   * that.  Names of locations and categories, in particular, are
+   * usually written once per batch.
+   *
+   * To change the format, add flags for new parts and increase
+   * VERSION.  A reader rejects batches with versions newer than its
+   * own, and should keep reading the older ones.
+   */
+
+  // +-----------+------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The version of the format that we write.
+   */
+  public static final int VERSION = 1;
+
+  /**
+   * The bytes that begin every batch, before the version.
+   */
+  static final byte[] MAGIC = { 'U', 'I', 'C' };
+
+  /**
+   * Flags for the optional parts of an incident.
+   */
+  static final int F_DATE = 1;
+  static final int F_LOCATION = 2;
+  static final int F_CATEGORIES = 4;
+  static final int F_COMMENTS = 8;
+  static final int F_MEDIA = 16;
+  static final int F_ERROR = 32;
+  static final int F_CUSTOM_FIELDS = 64;
+  static final int F_FIELDS = 128;
+
+  /**
+   * Flags for the optional parts of a location.
+   */
+  static final int L_LATITUDE = 1;
+  static final int L_LONGITUDE = 2;
+  static final int L_RAW = 4;
+
+  /**
+   * The number of fixed-point units in a degree.
+   */
+  static final double DEGREE = 1e7;
+
+  /**
+   * All of the fields that can be selected.
+   */
+  static final UshahidiIncidentField[] FIELDS =
+      UshahidiIncidentField.values();
+
+  // +--------+---------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The bytes written so far.
+   */
+  byte[] bytes;
+
+  /**
+   * The number of bytes written so far.
+   */
+  int length;
+
+  /**
+   * The buffer we read from.
+   */
+  ByteBuffer in;
+
+  /**
+   * The positions of the strings written so far.
+   */
+  HashMap<String, Integer> written;
+
+  /**
+   * The strings read so far.
+   */
+  ArrayList<String> read;
+
+  /**
+   * The id of the previous incident.
+   */
+  long lastId;
+
+  /**
+   * The previous date, in seconds since the epoch.
+   */
+  long lastSecond;
+
+  // +--------------+---------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a codec for one batch.  Codecs are made by encode and
+   * decode.
+   */
+  UshahidiIncidentCodec()
+  {
+  } // UshahidiIncidentCodec()
+
+  // +----------------+-------------------------------------------------
+  // | Static Methods |
+  // +----------------+
+
+  /**
+   * Encode a batch of incidents.
+   *
+   * @param incidents
+   *            The incidents.  They need not be sorted, but sorted
+   *            batches are smaller.
+   * @return
+   *            A buffer holding the batch, positioned at its start.
+   */
+  public static ByteBuffer encode(UshahidiIncident[] incidents)
+  {
+    UshahidiIncidentCodec codec = new UshahidiIncidentCodec();
+    codec.bytes = new byte[64 + 64 * incidents.length];
+    codec.written = new HashMap<String, Integer>();
+    for (int i = 0; i < MAGIC.length; i++)
+      codec.writeByte(MAGIC[i]);
+    codec.writeByte(VERSION);
+    codec.writeVarint(incidents.length);
+    for (int i = 0; i < incidents.length; i++)
+      codec.writeIncident(incidents[i]);
+    return ByteBuffer.wrap(codec.bytes, 0, codec.length);
+  } // encode(UshahidiIncident[])
+
+  /**
+   * Decode a batch of incidents.
+   *
+   * @param buffer
+   *            A buffer positioned at the start of a batch.  On
+   *            return, it is positioned just after the batch.
+   * @return
+   *            The incidents, in the order they were encoded.
+   * @exception Exception
+   *            If the buffer does not hold a batch of a version that
+   *            we can read.
+   */
+  public static UshahidiIncident[] decode(ByteBuffer buffer)
+    throws Exception
+  {
+    UshahidiIncidentCodec codec = new UshahidiIncidentCodec();
+    codec.in = buffer;
+    codec.read = new ArrayList<String>();
+    try
+      {
+        for (int i = 0; i < MAGIC.length; i++)
+          if (buffer.get() != MAGIC[i])
+            throw new Exception("Not a batch of incidents");
+        int version = buffer.get();
+        if ((version < 1) || (version > VERSION))
+          throw new Exception("Cannot read version " + version
+                              + " of the incident format");
+        int count = codec.readLength();
+        UshahidiIncident[] incidents = new UshahidiIncident[count];
+        for (int i = 0; i < count; i++)
+          incidents[i] = codec.readIncident();
+        return incidents;
+      } // try
+    catch (java.nio.BufferUnderflowException e)
+      {
+        throw new Exception("Truncated batch of incidents");
+      } // catch (BufferUnderflowException)
+  } // decode(ByteBuffer)
+
+  // +---------+--------------------------------------------------------
+  // | Writing |
+  // +---------+
+
+  /**
+   * Make room for n more bytes.
+   */
+  void ensure(int n)
+  {
+    if (this.length + n > this.bytes.length)
+      {
+        byte[] bigger =
+            new byte[Math.max(this.bytes.length * 2, this.length + n)];
+        System.arraycopy(this.bytes, 0, bigger, 0, this.length);
+        this.bytes = bigger;
+      } // if
+  } // ensure(int)
+
+  /**
+   * Write one byte.
+   */
+  void writeByte(int b)
+  {
+    this.ensure(1);
+    this.bytes[this.length++] = (byte) b;
+  } // writeByte(int)
+
+  /**
+   * Write a number that is not negative (or, rather, whose
+   * bits are to be taken as unsigned).
+   */
+  void writeVarint(long n)
+  {
+    this.ensure(10);
+    while ((n & ~0x7FL) != 0)
+      {
+        this.bytes[this.length++] = (byte) ((n & 0x7F) | 0x80);
+        n >>>= 7;
+      } // while
+    this.bytes[this.length++] = (byte) n;
+  } // writeVarint(long)
+
+  /**
+   * Write a number that may be negative, zigzag encoded.
+   */
+  void writeSigned(long n)
+  {
+    this.writeVarint((n << 1) ^ (n >> 63));
+  } // writeSigned(long)
+
+  /**
+   * Write the eight bytes of a double, high byte first.
+   */
+  void writeDouble(double d)
+  {
+    long bits = Double.doubleToLongBits(d);
+    this.ensure(8);
+    for (int shift = 56; shift >= 0; shift -= 8)
+      this.bytes[this.length++] = (byte) (bits >>> shift);
+  } // writeDouble(double)
+
+  /**
+   * Write a string, or its position in the string table.
+   */
+  void writeString(String str)
+  {
+    if (str == null)
+      {
+        this.writeVarint(0);
+        return;
+      } // if
+    Integer position = this.written.get(str);
+    if (position != null)
+      {
+        this.writeVarint(2 + position.intValue());
+        return;
+      } // if
+    this.written.put(str, this.written.size());
+    byte[] utf8 = str.getBytes(StandardCharsets.UTF_8);
+    this.writeVarint(1);
+    this.writeVarint(utf8.length);
+    this.ensure(utf8.length);
+    System.arraycopy(utf8, 0, this.bytes, this.length, utf8.length);
+    this.length += utf8.length;
+  } // writeString(String)
+
+  /**
+   * Write a date as a difference from the previous date.
+   */
+  void writeDate(LocalDateTime date)
+  {
+    long second = date.toEpochSecond(ZoneOffset.UTC);
+    int nano = date.getNano();
+    this.writeSigned(((second - this.lastSecond) << 1)
+                     | ((nano != 0) ? 1 : 0));
+    if (nano != 0)
+      this.writeVarint(nano);
+    this.lastSecond = second;
+  } // writeDate(LocalDateTime)
+
+  /**
+   * Write a location.
+   */
+  void writeLocation(UshahidiLocation location)
+  {
+    long latitude = Math.round(location.latitude * DEGREE);
+    long longitude = Math.round(location.longitude * DEGREE);
+    int flags = 0;
+    if (location.latitude != UshahidiLocation.NO_LATITUDE)
+      flags |= L_LATITUDE;
+    if (location.longitude != UshahidiLocation.NO_LONGITUDE)
+      flags |= L_LONGITUDE;
+    if ((latitude / DEGREE != location.latitude)
+        || (longitude / DEGREE != location.longitude))
+      flags |= L_RAW;
+    this.writeVarint(flags);
+    this.writeSigned(location.id);
+    this.writeString(location.name);
+    if ((flags & L_RAW) != 0)
+      {
+        if ((flags & L_LATITUDE) != 0)
+          this.writeDouble(location.latitude);
+        if ((flags & L_LONGITUDE) != 0)
+          this.writeDouble(location.longitude);
+      } // if the coordinates are not fixed-point
+    else
+      {
+        if ((flags & L_LATITUDE) != 0)
+          this.writeSigned(latitude);
+        if ((flags & L_LONGITUDE) != 0)
+          this.writeSigned(longitude);
+      } // else
+  } // writeLocation(UshahidiLocation)
+
+  /**
+   * Write an incident.
+   */
+  void writeIncident(UshahidiIncident incident)
+  {
+    int flags = 0;
+    if (incident.date != null)
+      flags |= F_DATE;
+    if (incident.location != null)
+      flags |= F_LOCATION;
+    if (incident.categories != null)
+      flags |= F_CATEGORIES;
+    if (incident.comments != null)
+      flags |= F_COMMENTS;
+    if (incident.media != null)
+      flags |= F_MEDIA;
+    if (incident.error != null)
+      flags |= F_ERROR;
+    if (incident.customFields != null)
+      flags |= F_CUSTOM_FIELDS;
+    if (incident.fields != null)
+      flags |= F_FIELDS;
+
+    this.writeVarint(flags);
+    this.writeSigned(incident.id - this.lastId);
+    this.lastId = incident.id;
+    this.writeString(incident.title);
+    this.writeString(incident.description);
+    if (incident.date != null)
+      this.writeDate(incident.date);
+    this.writeSigned(incident.mode);
+    this.writeSigned(incident.active);
+    this.writeSigned(incident.verified);
+    if (incident.location != null)
+      this.writeLocation(incident.location);
+    if (incident.categories != null)
+      {
+        int count = 0;
+        for (UshahidiCategory category : incident.categories)
+          if (category != null)
+            count++;
+        this.writeVarint(count);
+        for (UshahidiCategory category : incident.categories)
+          {
+            if (category == null)
+              continue;
+            this.writeSigned(category.id);
+            this.writeString(category.name);
+          } // for
+      } // if there are categories
+    if (incident.comments != null)
+      {
+        int count = 0;
+        for (UshahidiComment comment : incident.comments)
+          if (comment != null)
+            count++;
+        this.writeVarint(count);
+        for (UshahidiComment comment : incident.comments)
+          {
+            if (comment == null)
+              continue;
+            this.writeSigned(comment.id);
+            this.writeSigned((long) comment.incident - incident.id);
+            this.writeString(comment.author);
+            this.writeString(comment.description);
+            if (comment.date == null)
+              this.writeVarint(0);
+            else
+              {
+                this.writeVarint(1);
+                this.writeDate(comment.date);
+              } // else
+          } // for
+      } // if there are comments
+    if (incident.media != null)
+      this.writeString(incident.media.toString());
+    if (incident.error != null)
+      this.writeString(incident.error.toString());
+    if (incident.customFields != null)
+      this.writeString(incident.customFields.toString());
+    if (incident.fields != null)
+      {
+        long set = 0;
+        for (UshahidiIncidentField field : incident.fields)
+          set |= 1L << field.ordinal();
+        this.writeVarint(set);
+      } // if only some fields were read
+  } // writeIncident(UshahidiIncident)
+
+  // +---------+--------------------------------------------------------
+  // | Reading |
+  // +---------+
+
+  /**
+   * Read a number written by writeVarint.
+   */
+  long readVarint()
+    throws Exception
+  {
+    long n = 0;
+    for (int shift = 0; shift < 64; shift += 7)
+      {
+        byte b = this.in.get();
+        n |= (long) (b & 0x7F) << shift;
+        if (b >= 0)
+          return n;
+      } // for
+    throw new Exception("Bad number in batch of incidents");
+  } // readVarint()
+
+  /**
+   * Read a number written by writeSigned.
+   */
+  long readSigned()
+    throws Exception
+  {
+    long n = this.readVarint();
+    return (n >>> 1) ^ -(n & 1);
+  } // readSigned()
+
+  /**
+   * Read an int written by writeSigned.
+   */
+  int readInt()
+    throws Exception
+  {
+    return (int) this.readSigned();
+  } // readInt()
+
+  /**
+   * Read a count or length, which cannot be more than the bytes that
+   * remain.
+   */
+  int readLength()
+    throws Exception
+  {
+    long n = this.readVarint();
+    if (n > this.in.remaining())
+      throw new Exception("Truncated batch of incidents");
+    return (int) n;
+  } // readLength()
+
+  /**
+   * Read a double written by writeDouble.
+   */
+  double readDouble()
+    throws Exception
+  {
+    long bits = 0;
+    for (int i = 0; i < 8; i++)
+      bits = (bits << 8) | (this.in.get() & 0xFF);
+    return Double.longBitsToDouble(bits);
+  } // readDouble()
+
+  /**
+   * Read a string written by writeString.
+   */
+  String readString()
+    throws Exception
+  {
+    long ref = this.readVarint();
+    if (ref == 0)
+      return null;
+    if (ref >= 2)
+      {
+        if (ref - 2 >= this.read.size())
+          throw new Exception("Bad string in batch of incidents");
+        return this.read.get((int) (ref - 2));
+      } // if
+    int length = this.readLength();
+    String str;
+    if (this.in.hasArray())
+      {
+        int position = this.in.position();
+        str = new String(this.in.array(), this.in.arrayOffset() + position,
+                         length, StandardCharsets.UTF_8);
+        this.in.position(position + length);
+      } // if the buffer is backed by an array
+    else
+      {
+        byte[] utf8 = new byte[length];
+        this.in.get(utf8);
+        str = new String(utf8, StandardCharsets.UTF_8);
+      } // else
+    this.read.add(str);
+    return str;
+  } // readString()
+
+  /**
+   * Read a date written by writeDate.
+   */
+  LocalDateTime readDate()
+    throws Exception
+  {
+    long step = this.readSigned();
+    int nano = ((step & 1) != 0) ? (int) this.readVarint() : 0;
+    this.lastSecond += step >> 1;
+    return LocalDateTime.ofEpochSecond(this.lastSecond, nano, ZoneOffset.UTC);
+  } // readDate()
+
+  /**
+   * Read a location written by writeLocation.
+   */
+  UshahidiLocation readLocation()
+    throws Exception
+  {
+    int flags = (int) this.readVarint();
+    UshahidiLocation location = new UshahidiLocation();
+    location.id = this.readInt();
+    location.name = this.readString();
+    if ((flags & L_RAW) != 0)
+      {
+        if ((flags & L_LATITUDE) != 0)
+          location.latitude = this.readDouble();
+        if ((flags & L_LONGITUDE) != 0)
+          location.longitude = this.readDouble();
+      } // if the coordinates are not fixed-point
+    else
+      {
+        if ((flags & L_LATITUDE) != 0)
+          location.latitude = this.readSigned() / DEGREE;
+        if ((flags & L_LONGITUDE) != 0)
+          location.longitude = this.readSigned() / DEGREE;
+      } // else
+    return location;
+  } // readLocation()
+
+  /**
+   * Read an incident written by writeIncident.
+   */
+  UshahidiIncident readIncident()
+    throws Exception
+  {
+    UshahidiIncident incident = new UshahidiIncident();
+    int flags = (int) this.readVarint();
+    this.lastId += this.readSigned();
+    incident.id = (int) this.lastId;
+    incident.title = this.readString();
+    incident.description = this.readString();
+    if ((flags & F_DATE) != 0)
+      incident.date = this.readDate();
+    incident.mode = this.readInt();
+    incident.active = this.readInt();
+    incident.verified = this.readInt();
+    if ((flags & F_LOCATION) != 0)
+      incident.location = this.readLocation();
+    if ((flags & F_CATEGORIES) != 0)
+      {
+        incident.categories = new UshahidiCategory[this.readLength()];
+        for (int i = 0; i < incident.categories.length; i++)
+          {
+            int id = this.readInt();
+            incident.categories[i] =
+                new UshahidiCategory(id, this.readString());
+          } // for
+      } // if there are categories
+    if ((flags & F_COMMENTS) != 0)
+      {
+        incident.comments = new UshahidiComment[this.readLength()];
+        for (int i = 0; i < incident.comments.length; i++)
+          {
+            int id = this.readInt();
+            int parent = (int) (incident.id + this.readSigned());
+            String author = this.readString();
+            String description = this.readString();
+            LocalDateTime date =
+                (this.readVarint() != 0) ? this.readDate() : null;
+            incident.comments[i] =
+                new UshahidiComment(id, parent, author, description, date);
+          } // for
+      } // if there are comments
+    if ((flags & F_MEDIA) != 0)
+      incident.media = new JSONArray(this.readString());
+    if ((flags & F_ERROR) != 0)
+      incident.error = new JSONArray(this.readString());
+    if ((flags & F_CUSTOM_FIELDS) != 0)
+      incident.customFields = new JSONObject(this.readString());
+    if ((flags & F_FIELDS) != 0)
+      {
+        long set = this.readVarint();
+        incident.fields = EnumSet.noneOf(UshahidiIncidentField.class);
+        for (int i = 0; i < FIELDS.length; i++)
+          if ((set & (1L << i)) != 0)
+            incident.fields.add(FIELDS[i]);
+      } // if only some fields were read
+    return incident;
+  } // readIncident()
+
+} // UshahidiIncidentCodec
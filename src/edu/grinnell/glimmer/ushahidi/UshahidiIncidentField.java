@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2014 Samuel A. Rebelsky.  All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.grinnell.glimmer.ushahidi;
+
+/**
+ * The parts of an incident that can be requested when incidents are
+ * read from the server.  Each part corresponds to one or more keys in
+ * the JSON that the Ushahidi Web API returns.
+ *
+ * @version 0.1.0 of 25 September 2014
+ * @author Samuel A. Rebelsky
+ */
+public enum UshahidiIncidentField
+{
+  /**
+   * The incident id.
+   */
+  ID(true, "incidentid"),
+
+  /**
+   * The title.
+   */
+  TITLE(true, "incidenttitle"),
+
+  /**
+   * The description.
+   */
+  DESCRIPTION(true, "incidentdescription"),
+
+  /**
+   * The date.
+   */
+  DATE(true, "incidentdate"),
+
+  /**
+   * The mode.
+   */
+  MODE(true, "incidentmode"),
+
+  /**
+   * Whether or not the incident is active.
+   */
+  ACTIVE(true, "incidentactive"),
+
+  /**
+   * Whether or not the incident is verified.
+   */
+  VERIFIED(true, "incidentverified"),
+
+  /**
+   * The id and name of the location.
+   */
+  LOCATION(true, "locationid", "locationname"),
+
+  /**
+   * The latitude and longitude of the location.
+   */
+  COORDINATES(true, "locationlatitude", "locationlongitude"),
+
+  /**
+   * The categories.
+   */
+  CATEGORIES(false, "categories"),
+
+  /**
+   * The media.
+   */
+  MEDIA(false, "media"),
+
+  /**
+   * The errors.
+   */
+  ERROR(false, "error"),
+
+  /**
+   * The custom fields.
+   */
+  CUSTOM_FIELDS(false, "customfields");
+
+  // +--------+---------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Whether the keys are inside the "incident" object (true for the
+   * simple parts) or next to it.
+   */
+  final boolean inner;
+
+  /**
+   * The JSON keys that hold this part of an incident.
+   */
+  final String[] keys;
+
+  // +--------------+---------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a field held in the given keys, which are inside the
+   * "incident" object if inner is true.
+   */
+  UshahidiIncidentField(boolean inner, String... keys)
+  {
+    this.inner = inner;
+    this.keys = keys;
+  } // UshahidiIncidentField(boolean, String...)
+
+} // UshahidiIncidentField
@@ -19,6 +19,8 @@ package edu.grinnell.glimmer.ushahidi;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Spliterator;
+import java.util.Spliterators;
 
 /**
  * A simplified list of incidents, provided in a style similar to that used for
@@ -41,6 +43,12 @@ public class UshahidiIncidentList
    * collection on the fly.
    * 
    * [1] http://docs.oracle.com/javase/6/docs/api/java/util/Iterator.html
+   *
+   * In streaming mode, nextIncident clears the slot of each incident it
+   * returns.  Once at least half of the list has been consumed, we drop
+   * the consumed prefix, so each incident is moved at most once (on
+   * average) and the list never holds much more than the unseen
+   * incidents.
    */
 
   // +-----------+------------------------------------------------------
@@ -66,6 +74,11 @@ public class UshahidiIncidentList
    */
   int index;
 
+  /**
+   * Do we release incidents once nextIncident has returned them?
+   */
+  boolean streaming = false;
+
   // +--------------+---------------------------------------------------
   // | Constructors |
   // +--------------+
@@ -101,10 +114,14 @@ public class UshahidiIncidentList
    *
    * @return
    *            An array of incidents, in the order they were added to 
-   *            the list.
+   *            the list.  In streaming mode, only the incidents that
+   *            have not yet been returned by nextIncident.
    */
   public UshahidiIncident[] getIncidents()
   {
+    if (this.streaming)
+      return this.incidents.subList(this.index, this.incidents.size())
+                           .toArray(UI_ARRAY);
     return this.incidents.toArray(UI_ARRAY);
   } // getIncidents()
 
@@ -130,13 +147,62 @@ public class UshahidiIncidentList
   public UshahidiIncident nextIncident()
     throws Exception
   {
-    return this.incidents.get(this.index++);
+    if (!this.streaming)
+      return this.incidents.get(this.index++);
+
+    UshahidiIncident incident = this.incidents.set(this.index++, null);
+    if (2 * this.index >= this.incidents.size())
+      {
+        this.incidents.subList(0, this.index).clear();
+        this.index = 0;
+      } // if at least half the list has been consumed
+    return incident;
   } // nextIncident()
 
+  /**
+   * Get a spliterator over the unseen incidents, all of which then
+   * count as seen.  The spliterator works on a copy of those incidents,
+   * so it splits evenly and is unaffected by later additions.
+   *
+   * @return
+   *            A sized spliterator that provides the unseen incidents
+   *            in the order they were added to the list.
+   */
+  public Spliterator<UshahidiIncident> spliterator()
+  {
+    return Spliterators.spliterator(this.takeRemaining(),
+                                    Spliterator.ORDERED 
+                                    | Spliterator.NONNULL
+                                    | Spliterator.IMMUTABLE);
+  } // spliterator()
+
   // +--------------------+---------------------------------------------
   // | Additional Methods |
   // +--------------------+
 
+  /**
+   * Get all of the unseen incidents and mark them as seen.
+   *
+   * @return
+   *            The unseen incidents, in the order they were added.
+   */
+  UshahidiIncident[] takeRemaining()
+  {
+    int size = this.incidents.size();
+    UshahidiIncident[] remaining =
+        this.incidents.subList(this.index, size).toArray(UI_ARRAY);
+    if (this.streaming)
+      {
+        this.incidents.clear();
+        this.index = 0;
+      } // if we are streaming
+    else
+      {
+        this.index = size;
+      } // if we are keeping incidents
+    return remaining;
+  } // takeRemaining()
+
   /**
    * Add an incident to the end of the list.
    *
@@ -148,5 +214,26 @@ public class UshahidiIncidentList
     this.incidents.add(incident);
   } // addIncident
 
+  /**
+   * Turn streaming mode on or off.  In streaming mode, the list forgets
+   * each incident once nextIncident has returned it, so a single pass
+   * over a large collection needs memory only for the unseen incidents.
+   *
+   * @param streaming
+   *            true, to release consumed incidents; false, to keep them.
+   * @post
+   *            If streaming, incidents already returned by nextIncident
+   *            are no longer available from getIncidents.
+   */
+  public void setStreaming(boolean streaming)
+  {
+    if (streaming && !this.streaming)
+      {
+        this.incidents.subList(0, this.index).clear();
+        this.index = 0;
+      } // if we are starting to stream
+    this.streaming = streaming;
+  } // setStreaming(boolean)
+
 } // UshahidiIncidentList
 
@@ -0,0 +1,376 @@
+/**
+ * Copyright (c) 2014 Samuel A. Rebelsky.  All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.grinnell.glimmer.ushahidi;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import org.json.JSONObject;
+
+/**
+ * A writer that converts incidents to JSON text, field by field, without
+ * building a JSONObject first.  The text uses the same layout as the
+ * Ushahidi Web API, so it can be read back with the same code that reads
+ * responses from the server.
+ *
+ * @version 0.1.0 of 25 September 2014
+ * @author Samuel A. Rebelsky
+ */
+public class UshahidiIncidentWriter
+{
+  // +-------+----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * An incident is written as
+
+     {"incident":{"incidentid":1,"incidenttitle":"...",
+                  "incidentdescription":"...",
+                  "incidentdate":"2013-09-01 01:00:00","incidentmode":0,
+                  "incidentactive":1,"incidentverified":1,"locationid":100,
+                  "locationname":"Grinnell","locationlatitude":41.7436,
+                  "locationlongitude":-92.7247},
+      "categories":[{"category":{"id":1,"title":""}}],
+      "media":[]}
+
+   * followed by "error" and "customfields" when the incident has them.
+   * Location fields are left out when the incident has no location (or
+   * no latitude or longitude), and incidentdate is left out when the
+   * incident has no date.
+   *
+   * Dates are written digit by digit into a scratch buffer rather than
+   * with a DateTimeFormatter, and the day part is kept from one incident
+   * to the next, since incidents in a batch often share a day.
+   */
+
+  // +--------+---------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Where the text goes.
+   */
+  Writer out;
+
+  /**
+   * Scratch space for numbers and dates.
+   */
+  char[] scratch = new char[20];
+
+  /**
+   * The formatted day ("yyyy-MM-dd ") of the last date written.
+   */
+  char[] day = new char[11];
+
+  /**
+   * The year that day holds.  Integer.MIN_VALUE means that day holds
+   * nothing yet.
+   */
+  int dayYear = Integer.MIN_VALUE;
+
+  /**
+   * The month that day holds.
+   */
+  int dayMonth;
+
+  /**
+   * The day of the month that day holds.
+   */
+  int dayOfMonth;
+
+  // +--------------+---------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a writer that sends its text to out.
+   */
+  public UshahidiIncidentWriter(Writer out)
+  {
+    this.out = out;
+  } // UshahidiIncidentWriter(Writer)
+
+  /**
+   * Create a writer that sends its text, encoded as UTF-8, to out.
+   * Call flush when done.
+   */
+  public UshahidiIncidentWriter(OutputStream out)
+  {
+    this(new BufferedWriter(new OutputStreamWriter(out,
+                                                   StandardCharsets.UTF_8)));
+  } // UshahidiIncidentWriter(OutputStream)
+
+  // +---------+--------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Put a non-negative number into buf as exactly width digits,
+   * starting at pos.
+   */
+  void digits(char[] buf, int pos, int n, int width)
+  {
+    for (int i = pos + width - 1; i >= pos; i--)
+      {
+        buf[i] = (char) ('0' + n % 10);
+        n /= 10;
+      } // for
+  } // digits(char[], int, int, int)
+
+  /**
+   * Write an integer.
+   */
+  void writeInt(int n)
+    throws IOException
+  {
+    if (n == Integer.MIN_VALUE)
+      {
+        this.out.write(Integer.toString(n));
+        return;
+      } // if we can't negate n
+    long abs = Math.abs((long) n);
+    int i = this.scratch.length;
+    do
+      {
+        this.scratch[--i] = (char) ('0' + abs % 10);
+        abs /= 10;
+      }
+    while (abs != 0);
+    if (n < 0)
+      this.scratch[--i] = '-';
+    this.out.write(this.scratch, i, this.scratch.length - i);
+  } // writeInt(int)
+
+  /**
+   * Write a string, in quotes.
+   */
+  void writeString(String str)
+    throws IOException
+  {
+    JSONObject.quote((str == null) ? "" : str, this.out);
+  } // writeString(String)
+
+  /**
+   * Write a date in the form the Ushahidi server uses.
+   */
+  void writeDate(LocalDateTime date)
+    throws IOException
+  {
+    int year = date.getYear();
+    int month = date.getMonthValue();
+    int dayOfMonth = date.getDayOfMonth();
+    if ((year != this.dayYear) || (month != this.dayMonth)
+        || (dayOfMonth != this.dayOfMonth))
+      {
+        if ((year < 0) || (year > 9999))
+          {
+            this.writeString(date.format(UshahidiIncident.dateInputFormat));
+            return;
+          } // if the year does not fit in four digits
+        digits(this.day, 0, year, 4);
+        this.day[4] = '-';
+        digits(this.day, 5, month, 2);
+        this.day[7] = '-';
+        digits(this.day, 8, dayOfMonth, 2);
+        this.day[10] = ' ';
+        this.dayYear = year;
+        this.dayMonth = month;
+        this.dayOfMonth = dayOfMonth;
+      } // if the day has changed
+
+    this.out.write('"');
+    this.out.write(this.day, 0, 11);
+    digits(this.scratch, 0, date.getHour(), 2);
+    this.scratch[2] = ':';
+    digits(this.scratch, 3, date.getMinute(), 2);
+    this.scratch[5] = ':';
+    digits(this.scratch, 6, date.getSecond(), 2);
+    this.scratch[8] = '"';
+    this.out.write(this.scratch, 0, 9);
+  } // writeDate(LocalDateTime)
+
+  /**
+   * Write the location fields of an incident, each preceded by a comma.
+   */
+  void writeLocation(UshahidiLocation location)
+    throws IOException
+  {
+    if (location == null)
+      return;
+    this.out.write(",\"locationid\":");
+    this.writeInt(location.getId());
+    this.out.write(",\"locationname\":");
+    this.writeString(location.getName());
+    if (location.getLatitude() != UshahidiLocation.NO_LATITUDE)
+      {
+        this.out.write(",\"locationlatitude\":");
+        this.out.write(JSONObject.doubleToString(location.getLatitude()));
+      } // if there is a latitude
+    if (location.getLongitude() != UshahidiLocation.NO_LONGITUDE)
+      {
+        this.out.write(",\"locationlongitude\":");
+        this.out.write(JSONObject.doubleToString(location.getLongitude()));
+      } // if there is a longitude
+  } // writeLocation(UshahidiLocation)
+
+  /**
+   * Write the array of categories of an incident.
+   */
+  void writeCategories(UshahidiCategory[] categories)
+    throws IOException
+  {
+    this.out.write('[');
+    boolean first = true;
+    if (categories != null)
+      {
+        for (int i = 0; i < categories.length; i++)
+          {
+            if (categories[i] == null)
+              continue;
+            if (!first)
+              this.out.write(',');
+            this.out.write("{\"category\":{\"id\":");
+            this.writeInt(categories[i].getId());
+            this.out.write(",\"title\":");
+            this.writeString(categories[i].getName());
+            this.out.write("}}");
+            first = false;
+          } // for
+      } // if there are categories
+    this.out.write(']');
+  } // writeCategories(UshahidiCategory[])
+
+  // +----------------+-------------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Write one incident.
+   *
+   * @param incident
+   *            The incident to write.  Must not be null.
+   * @exception IOException
+   *            If the text cannot be written.
+   */
+  public void write(UshahidiIncident incident)
+    throws IOException
+  {
+    this.out.write("{\"incident\":{\"incidentid\":");
+    this.writeInt(incident.id);
+    this.out.write(",\"incidenttitle\":");
+    this.writeString(incident.title);
+    this.out.write(",\"incidentdescription\":");
+    this.writeString(incident.description);
+    if (incident.date != null)
+      {
+        this.out.write(",\"incidentdate\":");
+        this.writeDate(incident.date);
+      } // if the incident has a date
+    this.out.write(",\"incidentmode\":");
+    this.writeInt(incident.mode);
+    this.out.write(",\"incidentactive\":");
+    this.writeInt(incident.active);
+    this.out.write(",\"incidentverified\":");
+    this.writeInt(incident.verified);
+    this.writeLocation(incident.location);
+    this.out.write("},\"categories\":");
+    this.writeCategories(incident.categories);
+    this.out.write(",\"media\":");
+    if (incident.media == null)
+      this.out.write("[]");
+    else
+      incident.media.write(this.out);
+    if (incident.error != null)
+      {
+        this.out.write(",\"error\":");
+        incident.error.write(this.out);
+      } // if the incident has errors
+    if (incident.customFields != null)
+      {
+        this.out.write(",\"customfields\":");
+        incident.customFields.write(this.out);
+      } // if the incident has custom fields
+    this.out.write('}');
+  } // write(UshahidiIncident)
+
+  /**
+   * Write an array of incidents.
+   *
+   * @param incidents
+   *            The incidents to write.
+   * @exception IOException
+   *            If the text cannot be written.
+   */
+  public void writeArray(UshahidiIncident[] incidents)
+    throws IOException
+  {
+    this.out.write('[');
+    for (int i = 0; i < incidents.length; i++)
+      {
+        if (i > 0)
+          this.out.write(',');
+        this.write(incidents[i]);
+      } // for
+    this.out.write(']');
+  } // writeArray(UshahidiIncident[])
+
+  /**
+   * Write all of the unseen incidents of a client as an array.  The
+   * incidents are taken one at a time, so a streaming client never
+   * needs to hold them all.
+   *
+   * @param client
+   *            The client whose incidents we write.
+   * @exception Exception
+   *            If the text cannot be written, or the client cannot
+   *            provide an incident.
+   */
+  public void writeArray(UshahidiClient client)
+    throws Exception
+  {
+    boolean first = true;
+    this.out.write('[');
+    while (client.hasMoreIncidents())
+      {
+        if (!first)
+          this.out.write(',');
+        this.write(client.nextIncident());
+        first = false;
+      } // while
+    this.out.write(']');
+  } // writeArray(UshahidiClient)
+
+  /**
+   * Flush the underlying writer.
+   *
+   * @exception IOException
+   *            If the text cannot be written.
+   */
+  public void flush()
+    throws IOException
+  {
+    this.out.flush();
+  } // flush()
+
+} // UshahidiIncidentWriter
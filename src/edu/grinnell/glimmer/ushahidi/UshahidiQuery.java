@@ -0,0 +1,419 @@
+/**
+ * Copyright (c) 2014 Samuel A. Rebelsky.  All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.grinnell.glimmer.ushahidi;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * A description of which incidents to get from an Ushahidi server.  The
+ * server can filter incidents in a few ways (by category, by location,
+ * by incident id, or by id range), so a query consists of at most one
+ * of those server-side filters plus a predicate that the client applies
+ * to whatever the server returns.  A query may also select which fields
+ * of each incident to read, so that the others are never built.
+ *
+ * @version 0.1.0 of 25 September 2014
+ * @author Samuel A. Rebelsky
+ */
+public class UshahidiQuery
+    implements Predicate<UshahidiIncident>
+{
+  // +-------+----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * The Ushahidi API accepts only one "by" per request.  When we combine
+   * two queries that both need the server, we send the first one to the
+   * server and test the second one on the client.
+   *
+   * Every set after the first is requested with "maxid", which the
+   * server does not combine with any other filter.  So for "catid" and
+   * "locid", only the first set is filtered by the server; we get the
+   * later ones unfiltered and rely on serverTest (through test) to
+   * pick out the matching incidents.  Since the first set holds the
+   * matching incidents with the highest ids, a first set that is not
+   * full holds all of them.  An "incidentid" query has at most one
+   * incident, so it never needs a second set.
+   *
+   * When a query selects fields, we also read the fields that the
+   * server-side filter needs (and the id, which we need to fetch the
+   * next set), since UshahidiWebSpliterator re-checks the filter on the
+   * client.  The client-side predicate should only look at selected
+   * fields.
+   */
+
+  // +-----------+------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The server-side filter that accepts all incidents.
+   */
+  static final String BY_ALL = "all";
+
+  /**
+   * The server-side filter for incidents in a category.
+   */
+  static final String BY_CATEGORY = "catid";
+
+  /**
+   * The server-side filter for incidents at a location.
+   */
+  static final String BY_LOCATION = "locid";
+
+  /**
+   * The server-side filter for a single incident.
+   */
+  static final String BY_INCIDENT = "incidentid";
+
+  /**
+   * The server-side filter for incidents with larger ids.
+   */
+  static final String BY_SINCE = "sinceid";
+
+  // +--------+---------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The kind of server-side filter (one of the BY_ constants).
+   */
+  String by;
+
+  /**
+   * The id used by the server-side filter.  Ignored for BY_ALL.
+   */
+  int id;
+
+  /**
+   * The part of the query that the client applies.
+   */
+  Predicate<? super UshahidiIncident> filter;
+
+  /**
+   * The fields to read, or null for all of them.
+   */
+  Set<UshahidiIncidentField> fields;
+
+  // +--------------+---------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a query from its parts.
+   */
+  UshahidiQuery(String by, int id, Predicate<? super UshahidiIncident> filter)
+  {
+    this(by, id, filter, null);
+  } // UshahidiQuery(String, int, Predicate)
+
+  /**
+   * Create a query from its parts, including the fields to read.
+   */
+  UshahidiQuery(String by, int id, Predicate<? super UshahidiIncident> filter,
+                Set<UshahidiIncidentField> fields)
+  {
+    this.by = by;
+    this.id = id;
+    this.filter = filter;
+    this.fields = fields;
+  } // UshahidiQuery(String, int, Predicate, Set<UshahidiIncidentField>)
+
+  // +-----------+------------------------------------------------------
+  // | Factories |
+  // +-----------+
+
+  /**
+   * Get a query for all incidents.
+   */
+  public static UshahidiQuery all()
+  {
+    return new UshahidiQuery(BY_ALL, 0, (incident) -> true);
+  } // all()
+
+  /**
+   * Get a query for the incidents in a category.
+   *
+   * @param categoryId
+   *            The id of the category.
+   */
+  public static UshahidiQuery byCategory(int categoryId)
+  {
+    return new UshahidiQuery(BY_CATEGORY, categoryId, (incident) -> true);
+  } // byCategory(int)
+
+  /**
+   * Get a query for the incidents at a location.
+   *
+   * @param locationId
+   *            The id of the location.
+   */
+  public static UshahidiQuery byLocation(int locationId)
+  {
+    return new UshahidiQuery(BY_LOCATION, locationId, (incident) -> true);
+  } // byLocation(int)
+
+  /**
+   * Get a query for the incident with a particular id.
+   *
+   * @param incidentId
+   *            The id of the incident.
+   */
+  public static UshahidiQuery byIncident(int incidentId)
+  {
+    return new UshahidiQuery(BY_INCIDENT, incidentId, (incident) -> true);
+  } // byIncident(int)
+
+  /**
+   * Get a query for the incidents whose ids are larger than id.
+   *
+   * @param id
+   *            The largest id that we do not want.
+   */
+  public static UshahidiQuery sinceId(int id)
+  {
+    return new UshahidiQuery(BY_SINCE, id, (incident) -> true);
+  } // sinceId(int)
+
+  /**
+   * Get a query for the incidents that meet a predicate.  Since the
+   * server cannot evaluate arbitrary predicates, this query fetches all
+   * of the incidents and filters them on the client.
+   *
+   * @param pred
+   *            A predicate that determines whether or not an incident
+   *            is acceptable.
+   */
+  public static UshahidiQuery where(Predicate<? super UshahidiIncident> pred)
+  {
+    return new UshahidiQuery(BY_ALL, 0, pred);
+  } // where(Predicate)
+
+  // +--------------+---------------------------------------------------
+  // | Combinations |
+  // +--------------+
+
+  /**
+   * Get a query for the incidents that match this query and also meet
+   * pred.  The predicate is applied on the client.
+   */
+  public UshahidiQuery and(Predicate<? super UshahidiIncident> pred)
+  {
+    Predicate<? super UshahidiIncident> filter = this.filter;
+    return new UshahidiQuery(this.by, this.id,
+                             (incident) -> filter.test(incident)
+                                           && pred.test(incident),
+                             this.fields);
+  } // and(Predicate)
+
+  /**
+   * Get a query for the incidents that match both this query and other.
+   * At most one of the two server-side filters is sent to the server;
+   * the other is applied on the client.
+   */
+  public UshahidiQuery and(UshahidiQuery other)
+  {
+    UshahidiQuery result;
+    if (this.by.equals(BY_ALL))
+      result = other.and(this.filter);
+    else if (other.by.equals(BY_ALL))
+      result = this.and(other.filter);
+    else
+      result = this.and((Predicate<UshahidiIncident>) other);
+    if ((this.fields == null) || (other.fields == null))
+      result.fields = null;
+    else
+      {
+        result.fields = EnumSet.copyOf(this.fields);
+        result.fields.addAll(other.fields);
+      } // if both queries select fields
+    return result;
+  } // and(UshahidiQuery)
+
+  /**
+   * Get a query for the same incidents as this one, but reading only
+   * some of their fields.  The other fields are skipped as the response
+   * is parsed, and the incidents report them as missing (see
+   * UshahidiIncident.hasField).
+   *
+   * @param fields
+   *            The fields to read.
+   */
+  public UshahidiQuery select(UshahidiIncidentField... fields)
+  {
+    Set<UshahidiIncidentField> selected =
+        EnumSet.noneOf(UshahidiIncidentField.class);
+    for (UshahidiIncidentField field : fields)
+      selected.add(field);
+    return new UshahidiQuery(this.by, this.id, this.filter, selected);
+  } // select(UshahidiIncidentField...)
+
+  // +-------------------+----------------------------------------------
+  // | Predicate Methods |
+  // +-------------------+
+
+  /**
+   * Determine whether an incident matches this query.
+   *
+   * @return
+   *            true, if the incident meets both the server-side filter
+   *            and the client-side predicate; false, otherwise.
+   */
+  public boolean test(UshahidiIncident incident)
+  {
+    return this.serverTest(incident) && this.filter.test(incident);
+  } // test(UshahidiIncident)
+
+  // +---------+--------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Determine whether an incident meets the server-side filter, as the
+   * server would determine it.
+   */
+  boolean serverTest(UshahidiIncident incident)
+  {
+    switch (this.by)
+      {
+        case BY_CATEGORY:
+          if (incident.categories == null)
+            return false;
+          for (UshahidiCategory category : incident.categories)
+            {
+              if ((category != null) && (category.getId() == this.id))
+                return true;
+            } // for
+          return false;
+        case BY_LOCATION:
+          return (incident.location != null)
+                 && (incident.location.getId() == this.id);
+        case BY_INCIDENT:
+          return incident.getId() == this.id;
+        case BY_SINCE:
+          return incident.getId() > this.id;
+        default:
+          return true;
+      } // switch
+  } // serverTest(UshahidiIncident)
+
+  /**
+   * Get the fields to read from the server, or null for all of them.
+   * Includes the fields that the server-side filter and paging need.
+   */
+  Set<UshahidiIncidentField> projection()
+  {
+    if (this.fields == null)
+      return null;
+    Set<UshahidiIncidentField> result = EnumSet.copyOf(this.fields);
+    result.add(UshahidiIncidentField.ID);
+    if (this.by.equals(BY_CATEGORY))
+      result.add(UshahidiIncidentField.CATEGORIES);
+    else if (this.by.equals(BY_LOCATION))
+      result.add(UshahidiIncidentField.LOCATION);
+    return result;
+  } // projection()
+
+  /**
+   * Get the API query for the first set of incidents.
+   *
+   * @param limit
+   *            The number of incidents to request.
+   */
+  String firstQuery(int limit)
+  {
+    if (this.by.equals(BY_ALL))
+      return "task=incidents&by=all&limit=" + limit;
+    return "task=incidents&by=" + this.by + "&id=" + this.id
+           + "&limit=" + limit;
+  } // firstQuery(int)
+
+  /**
+   * Get the API query for the next set of incidents, given the smallest
+   * id seen so far.
+   *
+   * We rely on the server answering by=maxid with the highest ids
+   * below minId, that is, returning incidents from highest id to
+   * lowest id and cutting the list off at limit.  That is what the
+   * servers we have seen do.  A server that kept the lowest ids
+   * instead would make us skip the incidents between the page and
+   * minId.
+   *
+   * @param minId
+   *            The smallest id seen so far.
+   * @param limit
+   *            The number of incidents to request.
+   */
+  String nextQuery(int minId, int limit)
+  {
+    return "task=incidents&by=maxid&id=" + minId + "&limit=" + limit;
+  } // nextQuery(int, int)
+
+  /**
+   * Determine whether the server-side filter can be fetched in several
+   * sets, each covering the ids below the previous ones.
+   */
+  boolean pageable()
+  {
+    return !this.by.equals(BY_INCIDENT);
+  } // pageable()
+
+  /**
+   * Get the smallest incident id that could match the server-side
+   * filter.
+   */
+  int lowestId()
+  {
+    if (this.by.equals(BY_SINCE))
+      return this.id + 1;
+    return UshahidiIncident.INVALID_INCIDENT_ID;
+  } // lowestId()
+
+  /**
+   * Determine whether there may be more incidents after a set that
+   * the server returned.
+   *
+   * @param page
+   *            The incidents the server returned, in any order.
+   * @param first
+   *            Whether page answered firstQuery (rather than nextQuery).
+   * @param limit
+   *            The number of incidents requested.
+   */
+  boolean morePages(UshahidiIncident[] page, boolean first, int limit)
+  {
+    if ((page.length == 0) || !this.pageable())
+      return false;
+    // A first set filtered by category or location that is not full
+    // has every matching incident.
+    if (first && (this.by.equals(BY_CATEGORY) || this.by.equals(BY_LOCATION))
+        && (page.length < limit))
+      return false;
+    int smallest = Integer.MAX_VALUE;
+    for (UshahidiIncident incident : page)
+      {
+        if (incident.getId() < smallest)
+          smallest = incident.getId();
+      } // for
+    return smallest >= this.lowestId();
+  } // morePages(UshahidiIncident[], boolean, int)
+
+} // UshahidiQuery
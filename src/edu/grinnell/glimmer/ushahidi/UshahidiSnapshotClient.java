@@ -0,0 +1,801 @@
+/**
+ * Copyright (c) 2014 Samuel A. Rebelsky.  All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.grinnell.glimmer.ushahidi;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A client that reads incidents from a snapshot file, such as one
+ * written by write.  The file is memory mapped rather than read, so
+ * opening even a very large snapshot is quick, incidents are decoded
+ * only when they are requested, and processes that open the same
+ * snapshot share one copy of it in the page cache.
+ *
+ * @version 0.1.0 of 25 September 2014
+ * @author Samuel A. Rebelsky
+ */
+public class UshahidiSnapshotClient
+    implements UshahidiClient
+{
+  // +-------+----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * A snapshot has four parts, all big endian.
+   *
+   *   header   HEADER bytes: the int MAGIC, the version, the number
+   *            of incidents, the size of a record, and then the
+   *            (long) offsets of the index and the heap and the
+   *            length of the heap
+   *   records  one RECORD-byte record for each incident, in the order
+   *            they were written (see the R_ constants for the layout)
+   *   index    for each incident, its id and the number of its
+   *            record, as two ints, sorted by id
+   *   heap     strings, each an int length followed by that many
+   *            bytes of UTF-8, and the parts of incidents that do
+   *            not fit in a record
+   *
+   * A record refers to strings by their offset in the heap, or -1 for
+   * null.  Location names repeat from incident to incident, so the
+   * first SHARED_STRINGS distinct names are stored once; titles,
+   * descriptions, and any later names are stored with each incident.
+   * Categories, comments, media, errors, custom fields, and the set of
+   * selected fields vary in size, so when an incident has any of them,
+   * they are encoded with UshahidiIncidentCodec and stored in the heap
+   * as the "extra" part of the record.
+   *
+   * A single mapping cannot be larger than 2GB, so we map the file in
+   * segments of 2^SEGMENT_BITS bytes and take care with values that
+   * cross from one segment to the next.  The mappings last until the
+   * client is garbage collected; there is no way to close them sooner.
+   *
+   * The writer keeps the index in memory (eight bytes per incident),
+   * along with the offsets of at most SHARED_STRINGS location names,
+   * and the heap in a temporary file until the records are done.
+   */
+
+  // +-----------+------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The first four bytes of a snapshot ("USNP").
+   */
+  public static final int MAGIC = 0x55534E50;
+
+  /**
+   * The version of the format that we write.
+   */
+  public static final int VERSION = 1;
+
+  /**
+   * The size of the header.
+   */
+  static final int HEADER = 64;
+
+  /**
+   * The offsets of the parts of a record, and its size.
+   */
+  static final int R_ID = 0;
+  static final int R_FLAGS = 4;
+  static final int R_SECONDS = 8;
+  static final int R_NANO = 16;
+  static final int R_MODE = 20;
+  static final int R_ACTIVE = 24;
+  static final int R_VERIFIED = 28;
+  static final int R_LOCATION_ID = 32;
+  static final int R_LATITUDE = 40;
+  static final int R_LONGITUDE = 48;
+  static final int R_TITLE = 56;
+  static final int R_DESCRIPTION = 64;
+  static final int R_LOCATION_NAME = 72;
+  static final int R_EXTRA = 80;
+  static final int RECORD = 88;
+
+  /**
+   * Flags for the optional parts of a record.
+   */
+  static final int F_DATE = 1;
+  static final int F_LOCATION = 2;
+  static final int F_EXTRA = 4;
+
+  /**
+   * The number of distinct location names that are stored only once.
+   */
+  static final int SHARED_STRINGS = 4096;
+
+  /**
+   * The size of a mapped segment, as a power of two.
+   */
+  static final int SEGMENT_BITS = 30;
+
+  // +--------+---------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The segments of the file.
+   */
+  MappedByteBuffer[] segments;
+
+  /**
+   * The number of incidents.
+   */
+  int count;
+
+  /**
+   * The offset of the index.
+   */
+  long index;
+
+  /**
+   * The offset of the heap.
+   */
+  long heap;
+
+  /**
+   * The number of the next unseen record.
+   */
+  int next;
+
+  // +--------------+---------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a client that reads the incidents of a snapshot file.
+   *
+   * @param file
+   *            The snapshot.
+   * @exception IOException
+   *            If the file cannot be mapped, or is not a snapshot.
+   */
+  public UshahidiSnapshotClient(Path file)
+    throws IOException
+  {
+    try (FileChannel channel = FileChannel.open(file,
+                                                StandardOpenOption.READ))
+      {
+        long size = channel.size();
+        if (size < HEADER)
+          throw new IOException(file + " is not a snapshot");
+        int n = (int) ((size - 1) >>> SEGMENT_BITS) + 1;
+        this.segments = new MappedByteBuffer[n];
+        for (int i = 0; i < n; i++)
+          {
+            long start = (long) i << SEGMENT_BITS;
+            this.segments[i] =
+                channel.map(FileChannel.MapMode.READ_ONLY, start,
+                            Math.min(1L << SEGMENT_BITS, size - start));
+          } // for
+        if (this.getInt(0) != MAGIC)
+          throw new IOException(file + " is not a snapshot");
+        int version = this.getInt(4);
+        if ((version < 1) || (version > VERSION))
+          throw new IOException("Cannot read version " + version
+                                + " of the snapshot format");
+        this.count = this.getInt(8);
+        this.index = this.getLong(16);
+        this.heap = this.getLong(24);
+        long heapLength = this.getLong(32);
+        if ((this.count < 0) || (this.getInt(12) != RECORD)
+            || (this.index != HEADER + (long) this.count * RECORD)
+            || (this.heap < this.index + 8L * this.count)
+            || (this.heap + heapLength > size))
+          throw new IOException(file + " is not a well-formed snapshot");
+      } // try
+  } // UshahidiSnapshotClient(Path)
+
+  // +------------------------+-----------------------------------------
+  // | UshahidiClient Methods |
+  // +------------------------+
+
+  /**
+   * Get all of the unseen incidents, which then count as seen.
+   *
+   * @return
+   *            The incidents that have not yet been returned by
+   *            nextIncident, in the order of the snapshot.
+   */
+  public UshahidiIncident[] getIncidents()
+  {
+    UshahidiIncident[] incidents = new UshahidiIncident[this.count - this.next];
+    for (int i = 0; i < incidents.length; i++)
+      incidents[i] = this.record(this.next++);
+    return incidents;
+  } // getIncidents()
+
+  /**
+   * Determine if any unseen incidents remain.
+   *
+   * @return true, if incidents remain; false, otherwise.
+   */
+  public boolean hasMoreIncidents()
+  {
+    return this.next < this.count;
+  } // hasMoreIncidents()
+
+  /**
+   * Get the next unseen incident.
+   *
+   * @return
+   *            The next incident in the snapshot.
+   * @exception Exception
+   *            If no incidents remain.
+   */
+  public UshahidiIncident nextIncident()
+    throws Exception
+  {
+    if (this.next >= this.count)
+      throw new Exception("No incidents remain.");
+    return this.record(this.next++);
+  } // nextIncident()
+
+  /**
+   * Get a spliterator over the unseen incidents, all of which then
+   * count as seen.  Since any record can be decoded on its own, the
+   * spliterator splits evenly and the parts can be decoded in
+   * parallel.
+   *
+   * @return
+   *            A sized spliterator that provides the unseen incidents
+   *            in the order of the snapshot.
+   */
+  public Spliterator<UshahidiIncident> spliterator()
+  {
+    Spliterator<UshahidiIncident> records =
+        new RecordSpliterator(this.next, this.count);
+    this.next = this.count;
+    return records;
+  } // spliterator()
+
+  // +--------------------+---------------------------------------------
+  // | Additional Methods |
+  // +--------------------+
+
+  /**
+   * Get the number of incidents in the snapshot, seen or not.
+   */
+  public int size()
+  {
+    return this.count;
+  } // size()
+
+  /**
+   * Find an incident by id.  This does not change which incidents
+   * count as seen.
+   *
+   * @param id
+   *            The id of the incident.
+   * @return
+   *            The incident with that id (the first one written, if
+   *            there are several), or null if there is none.
+   */
+  public UshahidiIncident getIncident(int id)
+  {
+    int low = 0;
+    int high = this.count;
+    while (low < high)
+      {
+        int middle = (low + high) >>> 1;
+        if (this.getInt(this.index + 8L * middle) < id)
+          low = middle + 1;
+        else
+          high = middle;
+      } // while
+    if ((low == this.count) || (this.getInt(this.index + 8L * low) != id))
+      return null;
+    return this.record(this.getInt(this.index + 8L * low + 4));
+  } // getIncident(int)
+
+  /**
+   * Decode the incident in one record.
+   */
+  UshahidiIncident record(int i)
+  {
+    long at = HEADER + (long) i * RECORD;
+    int flags = this.getInt(at + R_FLAGS);
+    UshahidiIncident incident = new UshahidiIncident();
+    incident.id = this.getInt(at + R_ID);
+    incident.title = this.getString(this.getLong(at + R_TITLE));
+    incident.description = this.getString(this.getLong(at + R_DESCRIPTION));
+    if ((flags & F_DATE) != 0)
+      incident.date =
+          LocalDateTime.ofEpochSecond(this.getLong(at + R_SECONDS),
+                                      this.getInt(at + R_NANO),
+                                      ZoneOffset.UTC);
+    incident.mode = this.getInt(at + R_MODE);
+    incident.active = this.getInt(at + R_ACTIVE);
+    incident.verified = this.getInt(at + R_VERIFIED);
+    if ((flags & F_LOCATION) != 0)
+      incident.location =
+          new UshahidiLocation(this.getInt(at + R_LOCATION_ID),
+                               this.getString(this.getLong(at
+                                                           + R_LOCATION_NAME)),
+                               this.getDouble(at + R_LATITUDE),
+                               this.getDouble(at + R_LONGITUDE));
+    if ((flags & F_EXTRA) != 0)
+      {
+        UshahidiIncident extra;
+        try
+          {
+            extra = UshahidiIncidentCodec.decode(
+                ByteBuffer.wrap(this.getBytes(this.getLong(at + R_EXTRA))))[0];
+          } // try
+        catch (Exception e)
+          {
+            throw new IllegalStateException("Bad snapshot record " + i, e);
+          } // catch (Exception)
+        incident.categories = extra.categories;
+        incident.comments = extra.comments;
+        incident.media = extra.media;
+        incident.error = extra.error;
+        incident.customFields = extra.customFields;
+        incident.fields = extra.fields;
+      } // if there are extra parts
+    return incident;
+  } // record(int)
+
+  // +---------------+--------------------------------------------------
+  // | Mapped Access |
+  // +---------------+
+
+  /**
+   * Get the byte at a position in the file.
+   */
+  byte getByte(long position)
+  {
+    return this.segments[(int) (position >>> SEGMENT_BITS)]
+               .get((int) (position & ((1 << SEGMENT_BITS) - 1)));
+  } // getByte(long)
+
+  /**
+   * Get the width bytes at a position in the file as a big endian
+   * number, one byte at a time.  We only need this for numbers that
+   * cross segments.
+   */
+  long getBytewise(long position, int width)
+  {
+    long n = 0;
+    for (int i = 0; i < width; i++)
+      n = (n << 8) | (this.getByte(position + i) & 0xFF);
+    return n;
+  } // getBytewise(long, int)
+
+  /**
+   * Get the int at a position in the file.
+   */
+  int getInt(long position)
+  {
+    MappedByteBuffer segment =
+        this.segments[(int) (position >>> SEGMENT_BITS)];
+    int offset = (int) (position & ((1 << SEGMENT_BITS) - 1));
+    if (offset + 4 <= segment.limit())
+      return segment.getInt(offset);
+    return (int) this.getBytewise(position, 4);
+  } // getInt(long)
+
+  /**
+   * Get the long at a position in the file.
+   */
+  long getLong(long position)
+  {
+    MappedByteBuffer segment =
+        this.segments[(int) (position >>> SEGMENT_BITS)];
+    int offset = (int) (position & ((1 << SEGMENT_BITS) - 1));
+    if (offset + 8 <= segment.limit())
+      return segment.getLong(offset);
+    return this.getBytewise(position, 8);
+  } // getLong(long)
+
+  /**
+   * Get the double at a position in the file.
+   */
+  double getDouble(long position)
+  {
+    return Double.longBitsToDouble(this.getLong(position));
+  } // getDouble(long)
+
+  /**
+   * Get the bytes of an entry in the heap.
+   *
+   * @param offset
+   *            The offset of the entry in the heap.
+   */
+  byte[] getBytes(long offset)
+  {
+    long position = this.heap + offset;
+    byte[] bytes = new byte[this.getInt(position)];
+    position += 4;
+    int done = 0;
+    while (done < bytes.length)
+      {
+        ByteBuffer segment =
+            this.segments[(int) (position >>> SEGMENT_BITS)].duplicate();
+        segment.position((int) (position & ((1 << SEGMENT_BITS) - 1)));
+        int n = Math.min(segment.remaining(), bytes.length - done);
+        segment.get(bytes, done, n);
+        done += n;
+        position += n;
+      } // while
+    return bytes;
+  } // getBytes(long)
+
+  /**
+   * Get a string from the heap.
+   *
+   * @param offset
+   *            The offset of the string in the heap, or -1 for null.
+   */
+  String getString(long offset)
+  {
+    if (offset < 0)
+      return null;
+    return new String(this.getBytes(offset), StandardCharsets.UTF_8);
+  } // getString(long)
+
+  // +-------------+----------------------------------------------------
+  // | Spliterator |
+  // +-------------+
+
+  /**
+   * A spliterator over a range of records.
+   */
+  class RecordSpliterator
+      implements Spliterator<UshahidiIncident>
+  {
+    /**
+     * The next record.
+     */
+    int from;
+
+    /**
+     * The record after the last one.
+     */
+    int to;
+
+    RecordSpliterator(int from, int to)
+    {
+      this.from = from;
+      this.to = to;
+    } // RecordSpliterator(int, int)
+
+    public int characteristics()
+    {
+      return Spliterator.ORDERED | Spliterator.NONNULL
+             | Spliterator.IMMUTABLE | Spliterator.SIZED
+             | Spliterator.SUBSIZED;
+    } // characteristics()
+
+    public long estimateSize()
+    {
+      return this.to - this.from;
+    } // estimateSize()
+
+    public boolean tryAdvance(Consumer<? super UshahidiIncident> action)
+    {
+      if (this.from >= this.to)
+        return false;
+      action.accept(record(this.from++));
+      return true;
+    } // tryAdvance(Consumer)
+
+    public Spliterator<UshahidiIncident> trySplit()
+    {
+      int middle = (this.from + this.to) >>> 1;
+      if (middle <= this.from)
+        return null;
+      Spliterator<UshahidiIncident> prefix =
+          new RecordSpliterator(this.from, middle);
+      this.from = middle;
+      return prefix;
+    } // trySplit()
+  } // class RecordSpliterator
+
+  // +----------------+-------------------------------------------------
+  // | Static Methods |
+  // +----------------+
+
+  /**
+   * Write all of the unseen incidents of a client to a snapshot file.
+   *
+   * @param client
+   *            The client whose incidents we write.
+   * @param file
+   *            The snapshot.  If it exists, it is replaced.
+   * @return
+   *            The number of incidents written.
+   * @exception Exception
+   *            If the file cannot be written, or the client cannot
+   *            provide an incident.
+   */
+  public static int write(UshahidiClient client, Path file)
+    throws Exception
+  {
+    // We delete the heap file ourselves rather than with DELETE_ON_CLOSE,
+    // since it must also go if the snapshot cannot be opened.
+    Path heapFile = Files.createTempFile("snapshot", ".heap");
+    try (FileChannel out =
+             FileChannel.open(file, StandardOpenOption.CREATE,
+                              StandardOpenOption.TRUNCATE_EXISTING,
+                              StandardOpenOption.WRITE);
+         FileChannel heapChannel =
+             FileChannel.open(heapFile, StandardOpenOption.READ,
+                              StandardOpenOption.WRITE))
+      {
+        Heap heap = new Heap(heapChannel);
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        long[] keys = new long[1024];
+        int count = 0;
+
+        // Write the records after the header, remembering the ids.
+        out.position(HEADER);
+        while (client.hasMoreIncidents())
+          {
+            UshahidiIncident incident = client.nextIncident();
+            if (count == Integer.MAX_VALUE)
+              throw new IOException("Too many incidents for one snapshot");
+            if (count == keys.length)
+              keys = Arrays.copyOf(keys, 2 * keys.length);
+            keys[count] = ((long) incident.id << 32) | count;
+            if (buffer.remaining() < RECORD)
+              drain(buffer, out);
+            writeRecord(incident, heap, buffer);
+            count++;
+          } // while
+        drain(buffer, out);
+
+        // Write the index.
+        Arrays.sort(keys, 0, count);
+        for (int i = 0; i < count; i++)
+          {
+            if (buffer.remaining() < 8)
+              drain(buffer, out);
+            buffer.putLong(keys[i]);
+          } // for
+        drain(buffer, out);
+
+        // Copy the heap after the index.
+        heap.flush();
+        long heapOffset = out.position();
+        for (long done = 0; done < heap.length; )
+          done += heapChannel.transferTo(done, heap.length - done, out);
+
+        // And go back for the header.
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(count);
+        buffer.putInt(RECORD);
+        buffer.putLong(HEADER + (long) count * RECORD);
+        buffer.putLong(heapOffset);
+        buffer.putLong(heap.length);
+        while (buffer.position() < HEADER)
+          buffer.put((byte) 0);
+        out.position(0);
+        drain(buffer, out);
+        return count;
+      } // try
+    finally
+      {
+        Files.deleteIfExists(heapFile);
+      } // finally
+  } // write(UshahidiClient, Path)
+
+  /**
+   * Write the contents of a buffer to a channel and clear the buffer.
+   */
+  static void drain(ByteBuffer buffer, FileChannel out)
+    throws IOException
+  {
+    buffer.flip();
+    while (buffer.hasRemaining())
+      out.write(buffer);
+    buffer.clear();
+  } // drain(ByteBuffer, FileChannel)
+
+  /**
+   * Put the record of one incident in a buffer, and its strings and
+   * extra parts in the heap.
+   */
+  static void writeRecord(UshahidiIncident incident, Heap heap,
+                          ByteBuffer buffer)
+    throws IOException
+  {
+    int flags = 0;
+    UshahidiIncident extra = null;
+    if (incident.date != null)
+      flags |= F_DATE;
+    if (incident.location != null)
+      flags |= F_LOCATION;
+    if ((incident.categories != null) || (incident.comments != null)
+        || (incident.media != null) || (incident.error != null)
+        || (incident.customFields != null) || (incident.fields != null))
+      {
+        flags |= F_EXTRA;
+        extra = new UshahidiIncident();
+        extra.categories = incident.categories;
+        extra.comments = incident.comments;
+        extra.media = incident.media;
+        extra.error = incident.error;
+        extra.customFields = incident.customFields;
+        extra.fields = incident.fields;
+      } // if there are extra parts
+
+    int start = buffer.position();
+    buffer.putInt(start + R_ID, incident.id);
+    buffer.putInt(start + R_FLAGS, flags);
+    if (incident.date != null)
+      {
+        buffer.putLong(start + R_SECONDS,
+                       incident.date.toEpochSecond(ZoneOffset.UTC));
+        buffer.putInt(start + R_NANO, incident.date.getNano());
+      } // if the incident has a date
+    else
+      {
+        buffer.putLong(start + R_SECONDS, 0);
+        buffer.putInt(start + R_NANO, 0);
+      } // else
+    buffer.putInt(start + R_MODE, incident.mode);
+    buffer.putInt(start + R_ACTIVE, incident.active);
+    buffer.putInt(start + R_VERIFIED, incident.verified);
+    UshahidiLocation location = incident.location;
+    buffer.putInt(start + R_LOCATION_ID, (location == null) ? 0 : location.id);
+    buffer.putInt(start + R_LOCATION_ID + 4, 0);
+    buffer.putDouble(start + R_LATITUDE,
+                     (location == null) ? UshahidiLocation.NO_LATITUDE
+                                        : location.latitude);
+    buffer.putDouble(start + R_LONGITUDE,
+                     (location == null) ? UshahidiLocation.NO_LONGITUDE
+                                        : location.longitude);
+    buffer.putLong(start + R_TITLE, heap.addString(incident.title));
+    buffer.putLong(start + R_DESCRIPTION,
+                   heap.addString(incident.description));
+    buffer.putLong(start + R_LOCATION_NAME,
+                   heap.addSharedString((location == null) ? null
+                                                           : location.name));
+    if (extra == null)
+      buffer.putLong(start + R_EXTRA, -1);
+    else
+      {
+        ByteBuffer encoded =
+            UshahidiIncidentCodec.encode(new UshahidiIncident[] { extra });
+        byte[] bytes = new byte[encoded.remaining()];
+        encoded.get(bytes);
+        buffer.putLong(start + R_EXTRA, heap.add(bytes));
+      } // else
+    buffer.position(start + RECORD);
+  } // writeRecord(UshahidiIncident, Heap, ByteBuffer)
+
+  // +------+-----------------------------------------------------------
+  // | Heap |
+  // +------+
+
+  /**
+   * The heap of a snapshot that is being written.
+   */
+  static class Heap
+  {
+    /**
+     * Where the heap is kept until the records are done.
+     */
+    FileChannel channel;
+
+    /**
+     * The entries not yet written to the channel.
+     */
+    ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+    /**
+     * The length of the heap so far.
+     */
+    long length = 0;
+
+    /**
+     * The offsets of the shared strings added so far.  Holds at most
+     * SHARED_STRINGS entries.
+     */
+    HashMap<String, Long> strings = new HashMap<String, Long>();
+
+    Heap(FileChannel channel)
+    {
+      this.channel = channel;
+    } // Heap(FileChannel)
+
+    /**
+     * Add an entry.
+     *
+     * @return
+     *            The offset of the entry.
+     */
+    long add(byte[] bytes)
+      throws IOException
+    {
+      long offset = this.length;
+      if (this.buffer.remaining() < 4 + bytes.length)
+        {
+          this.flush();
+          if (this.buffer.capacity() < 4 + bytes.length)
+            this.buffer = ByteBuffer.allocate(4 + bytes.length);
+        } // if the entry does not fit
+      this.buffer.putInt(bytes.length);
+      this.buffer.put(bytes);
+      this.length += 4 + bytes.length;
+      return offset;
+    } // add(byte[])
+
+    /**
+     * Add a string.
+     *
+     * @return
+     *            The offset of the string, or -1 for null.
+     */
+    long addString(String str)
+      throws IOException
+    {
+      if (str == null)
+        return -1;
+      return this.add(str.getBytes(StandardCharsets.UTF_8));
+    } // addString(String)
+
+    /**
+     * Add a string that is likely to repeat, unless it is already in
+     * the heap.  Once SHARED_STRINGS strings are shared, new ones are
+     * added as with addString.
+     *
+     * @return
+     *            The offset of the string, or -1 for null.
+     */
+    long addSharedString(String str)
+      throws IOException
+    {
+      if (str == null)
+        return -1;
+      Long offset = this.strings.get(str);
+      if (offset != null)
+        return offset.longValue();
+      long added = this.addString(str);
+      if (this.strings.size() < SHARED_STRINGS)
+        this.strings.put(str, added);
+      return added;
+    } // addSharedString(String)
+
+    /**
+     * Write the buffered entries to the channel.
+     */
+    void flush()
+      throws IOException
+    {
+      drain(this.buffer, this.channel);
+    } // flush()
+  } // class Heap
+
+} // UshahidiSnapshotClient
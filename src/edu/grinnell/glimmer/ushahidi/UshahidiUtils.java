@@ -24,6 +24,10 @@ import java.io.Reader;
 
 import java.time.LocalDateTime;
 
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.zip.Dictionary;
+
 /**
  * Utilities for working with Ushahidi.
  * 
@@ -308,4 +312,56 @@ public class UshahidiUtils
   // | Additional Utilities |
   // +----------------------+
 
+  /**
+   * Get the status code from the error part of a server response.  The
+   * server sends the code as a string (e.g., "0"), but we also accept
+   * a number.
+   *
+   * @param code
+   *            The value of error.code in the response, or null if the
+   *            response had none.
+   * @return
+   *            The code, which is 0 if the request succeeded.
+   * @exception Exception
+   *                If the code is missing or is not an integer.
+   */
+  static int statusCode(Object code)
+    throws Exception
+  {
+    try
+      {
+        if (code instanceof Number)
+          return ((Number) code).intValue();
+        return Integer.parseInt((String) code);
+      } // try
+    catch (Exception e)
+      {
+        throw new Exception("Server failed to return status");
+      } // catch
+  } // statusCode(Object)
+
+  /**
+   * Learn a JSONzip dictionary from a sample of incidents, so that
+   * incidents can be compressed well even when they are sent one at a
+   * time.  The sender and the receiver must use the same dictionary;
+   * save it with toString and restore it with
+   * new Dictionary(new JSONObject(text)).
+   *
+   * @param sample
+   *            A client whose unseen incidents are typical of the ones
+   *            that will be compressed.
+   * @return
+   *            The dictionary.
+   * @exception Exception
+   *                If the client cannot provide an incident.
+   */
+  public static Dictionary zipDictionary(UshahidiClient sample)
+    throws Exception
+  {
+    JSONArray incidents = new JSONArray();
+    while (sample.hasMoreIncidents())
+      incidents.put(new JSONObject(sample.nextIncident().toJSONString()));
+    return Dictionary.train(incidents);
+  } // zipDictionary(UshahidiClient)
+
 } // UshahidiUtils
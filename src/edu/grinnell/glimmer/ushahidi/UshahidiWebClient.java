@@ -17,13 +17,19 @@
 
 package edu.grinnell.glimmer.ushahidi;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-
 import java.net.HttpURLConnection;
 import java.net.URL;
 
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 import org.json.JSONArray;
+import org.json.JSONExtractor;
 import org.json.JSONObject;
 
 /**
@@ -43,14 +49,25 @@ public class UshahidiWebClient
   
   /*
 
-Right now, this code assumes that the server has no more than
-DEFAULT_NUM_INCIDENTS incidents. If the server has more than
-DEFAULT_NUM_INCIDENTS incidents, the client is likely to miss the ones
-with lower ids.
-
-Right now, this code assumes that the server returns incidents
-from highest id to lowest id, since that's the behavior we've
-seen.
+We fetch incidents in pages of numIncidents (DEFAULT_NUM_INCIDENTS
+unless the constructor says otherwise).  Each page after the first asks
+for the incidents with ids below the smallest id seen so far, so a
+server with more incidents than fit in one page is read a page at a
+time rather than truncated.  See UshahidiQuery.nextQuery for what we
+assume about the order in which the server returns them.
+
+Clients built with the constructors fetch the first set of incidents
+before the constructor returns.  Clients built with open() fetch it
+in the background, and every method that touches the incidents first
+waits for that fetch to finish.  The background task calls fetchPage
+rather than fetchIncidents, since fetchIncidents waits for the task
+and the task cannot wait for itself.
+
+A client may be given an UshahidiQuery.  The query decides which
+requests we send to the server, and we keep only the incidents that
+match the whole query, so a page may add fewer incidents than the
+server returned.  Hence we track whether the server has run out of
+incidents separately from whether the last page added any.
 
    */
 
@@ -63,6 +80,19 @@ seen.
    */
   static final int DEFAULT_NUM_INCIDENTS = 5000;
 
+  /**
+   * The parts of a response that we use: the status code, the error
+   * message, and the incidents.  The rest of the response is skipped.
+   */
+  static final String[] RESPONSE_POINTERS =
+      new String[] { "/error/code", "/error/message", "/payload/incidents" };
+
+  /**
+   * An extractor for RESPONSE_POINTERS.
+   */
+  static final JSONExtractor RESPONSE_PARTS =
+      new JSONExtractor(RESPONSE_POINTERS);
+
   // +--------+---------------------------------------------------------
   // | Fields |
   // +--------+
@@ -93,6 +123,22 @@ seen.
    */
   int numIncidents;
 
+  /**
+   * The incidents we want from the server.
+   */
+  UshahidiQuery query;
+
+  /**
+   * Set once the server has no more incidents for us.
+   */
+  boolean exhausted = false;
+
+  /**
+   * The initial fetch of incidents, when it happens in the background.
+   * Null if the constructor fetched the incidents itself.
+   */
+  FutureTask<Integer> initialFetch = null;
+
   // +--------------+---------------------------------------------------
   // | Constructors |
   // +--------------+
@@ -132,24 +178,178 @@ seen.
    * @post The server is available for obtaining values.
    */
   public UshahidiWebClient(String server, int numIncidents) throws Exception
+  {
+    this(server, numIncidents, UshahidiQuery.all());
+  } // UshahidiWebClient(String, int)
+
+  /**
+   * Create a new client that connects to the specified server to obtain
+   * the incidents that match query.  As much of the query as possible
+   * is handled by the server.
+   *
+   * @param server
+   *            A string that gives the prefix of the URL, including the
+   *            protocol and the hostname.
+   * @param numIncidents
+   *            The number of incidents we grab from the server at a time,
+   *            more or less.  Must be a non-negative integer.
+   * @param query
+   *            The incidents we want.
+   * @exception Exception
+   *                when we cannot connect to the server.
+   */
+  public UshahidiWebClient(String server, int numIncidents,
+                           UshahidiQuery query)
+    throws Exception
   {
     // Fill in the fields
     this.server = server;
     this.numIncidents = numIncidents;
+    this.query = query;
     this.maxId = 0;
     this.minId = Integer.MAX_VALUE;
     this.incidents = new UshahidiIncidentList();
-    this.fetchIncidents();
-  } // UshahidiWebClient
+    this.fetchPage();
+  } // UshahidiWebClient(String, int, UshahidiQuery)
+
+  /**
+   * Create a new client whose first set of incidents is fetched by
+   * executor, rather than by the constructor.
+   *
+   * @param server
+   *            The prefix of the URL of the server.
+   * @param numIncidents
+   *            The number of incidents we grab from the server, more or less.
+   * @param query
+   *            The incidents we want.
+   * @param executor
+   *            The executor that runs the initial fetch.
+   */
+  UshahidiWebClient(String server, int numIncidents, UshahidiQuery query,
+                    Executor executor)
+  {
+    this.server = server;
+    this.numIncidents = numIncidents;
+    this.query = query;
+    this.maxId = 0;
+    this.minId = Integer.MAX_VALUE;
+    this.incidents = new UshahidiIncidentList();
+    this.initialFetch = new FutureTask<Integer>(() -> this.fetchPage());
+    executor.execute(this.initialFetch);
+  } // UshahidiWebClient(String, int, UshahidiQuery, Executor)
+
+  // +-----------+------------------------------------------------------
+  // | Factories |
+  // +-----------+
+
+  /**
+   * Create a new client for server without waiting for the server to
+   * respond.  The first set of incidents is fetched on a background
+   * thread.
+   *
+   * @param server
+   *            A string that gives the prefix of the URL, including the
+   *            protocol and the hostname.
+   * @param numIncidents
+   *            The number of incidents we grab from the server, more or less.
+   *            Must be a non-negative integer.
+   * @return
+   *            A client that may not yet have any incidents.  Use
+   *            <code>awaitReady</code> to wait for the first incidents.
+   */
+  public static UshahidiWebClient open(String server, int numIncidents)
+  {
+    return open(server, numIncidents, (task) ->
+      {
+        Thread fetcher = new Thread(task, "UshahidiWebClient " + server);
+        fetcher.setDaemon(true);
+        fetcher.start();
+      });
+  } // open(String, int)
+
+  /**
+   * Create a new client for server, using executor to fetch the first
+   * set of incidents.  Useful when opening clients for many servers
+   * at once.
+   *
+   * @param server
+   *            A string that gives the prefix of the URL, including the
+   *            protocol and the hostname.
+   * @param numIncidents
+   *            The number of incidents we grab from the server, more or less.
+   * @param executor
+   *            The executor that fetches the first set of incidents.
+   * @return
+   *            A client that may not yet have any incidents.
+   */
+  public static UshahidiWebClient open(String server, int numIncidents,
+                                       Executor executor)
+  {
+    return open(server, numIncidents, UshahidiQuery.all(), executor);
+  } // open(String, int, Executor)
+
+  /**
+   * Create a new client for the incidents on server that match query,
+   * using executor to fetch the first set of incidents.
+   *
+   * @param server
+   *            A string that gives the prefix of the URL, including the
+   *            protocol and the hostname.
+   * @param numIncidents
+   *            The number of incidents we grab from the server, more or less.
+   * @param query
+   *            The incidents we want.
+   * @param executor
+   *            The executor that fetches the first set of incidents.
+   * @return
+   *            A client that may not yet have any incidents.
+   */
+  public static UshahidiWebClient open(String server, int numIncidents,
+                                       UshahidiQuery query, Executor executor)
+  {
+    return new UshahidiWebClient(server, numIncidents, query, executor);
+  } // open(String, int, UshahidiQuery, Executor)
 
   // +---------+--------------------------------------------------------
   // | Helpers |
   // +---------+
 
+  /**
+   * Unwrap the exception thrown by the initial fetch.
+   */
+  static Exception fetchFailure(ExecutionException e)
+  {
+    Throwable cause = e.getCause();
+    if (cause instanceof Exception)
+      return (Exception) cause;
+    return e;
+  } // fetchFailure(ExecutionException)
+
+  /**
+   * Wait until the initial fetch, if any, has finished.
+   *
+   * @exception Exception
+   *                If the initial fetch failed.
+   */
+  void ensureReady()
+    throws Exception
+  {
+    if (this.initialFetch == null)
+      return;
+    try
+      {
+        this.initialFetch.get();
+      } // try
+    catch (ExecutionException e)
+      {
+        throw fetchFailure(e);
+      } // catch (ExecutionException)
+  } // ensureReady()
+
   /**
    * Fetch the next set of incidents from the server.
    * 
-   * @return n, The number of incidents fetched
+   * @return n, The number of matching incidents fetched
    * 
    * @exception Exception
    *                If we cannot get incidents from the server, or if any of
@@ -161,28 +361,84 @@ seen.
   public int fetchIncidents()
     throws Exception
   {
-    BufferedReader input; // Textual input from the server
-    String line; // One line of data from the server
-    String text = ""; // Data read from the server
-    JSONObject data; // Parsed text from the server
-    URL serverURL; // The full URL for fetching data
+    this.ensureReady();
+    return this.fetchPage();
+  } // fetchIncidents()
 
-    // Determine the URL to use. We use different URLs depending on
+  /**
+   * Fetch the next set of incidents from the server, without waiting
+   * for the initial fetch.
+   *
+   * @return n, The number of matching incidents fetched (0 once the
+   *         server has run out of incidents)
+   *
+   * @exception Exception
+   *                If we cannot get incidents from the server, or if any of
+   *                the incidents is malformed.
+   */
+  int fetchPage()
+    throws Exception
+  {
+    String query;
+
+    if (this.exhausted)
+      return 0;
+
+    // Determine the query to use. We use different queries depending on
     // whether this is the first time we've tried to fetch incidents
     // or a subsequent time.
-    if (this.minId == Integer.MAX_VALUE)
+    boolean first = (this.minId == Integer.MAX_VALUE);
+    if (first)
       {
-        serverURL =
-            new URL(this.server + "/api?task=incidents&by=all&limit="
-                    + numIncidents);
+        query = this.query.firstQuery(numIncidents);
       } // if (this.minId == Integer.MAX_VALUE)
     else
       {
-        serverURL =
-            new URL(this.server + "/api?task=incidents&by=maxid" + "&id="
-                    + this.minId + "&limit=" + numIncidents);
+        query = this.query.nextQuery(this.minId, numIncidents);
       } // if (this.minId != INTEGER.MAX_VALUE)
 
+    UshahidiIncident[] incidents = this.fetch(query);
+    int added = 0;
+    for (int i = 0; i < incidents.length; i++)
+      {
+        int id = incidents[i].getId();
+        if (id > this.maxId)
+          this.maxId = id;
+        if (id < this.minId)
+          this.minId = id;
+        if (this.query.test(incidents[i]))
+          {
+            this.incidents.addIncident(incidents[i]);
+            ++added;
+          } // if the incident matches the query
+      } // for
+    if (!this.query.morePages(incidents, first, this.numIncidents))
+      this.exhausted = true;
+    return added;
+  } // fetchPage()
+
+  /**
+   * Fetch the incidents that match an API query.  Does not change the
+   * state of the client, so it is safe to call from several threads
+   * at once.
+   *
+   * @param query
+   *            The query part of the URL, such as
+   *            <code>task=incidents&amp;by=all&amp;limit=10</code>.
+   * @return
+   *            The incidents the server returned, in the order it
+   *            returned them.
+   * @exception Exception
+   *                If we cannot get incidents from the server, or if any of
+   *                the incidents is malformed.
+   */
+  UshahidiIncident[] fetch(String query)
+    throws Exception
+  {
+    String text = ""; // Data read from the server
+    Object[] parts; // The parts of the text we use
+    URL serverURL = new URL(this.server + "/api?" + query);
+
     // Connect to the server
     HttpURLConnection connection;
     try
@@ -212,57 +468,103 @@ seen.
     // Grab the JSON text, which starts with an open brace
     text = text.substring(text.indexOf("{"));
 
-    // Convert the text to a JSONObject
-    data = new JSONObject(text);
+    // Pull out the parts we use, without building the rest.  If the
+    // query selects fields, the incidents are read as they are parsed.
+    JSONExtractor extractor = RESPONSE_PARTS;
+    Set<UshahidiIncidentField> fields = this.query.projection();
+    if (fields != null)
+      {
+        extractor = new JSONExtractor(RESPONSE_POINTERS,
+            new JSONExtractor.ValueReader[] { null, null,
+              (x) -> UshahidiIncident.readArray(x, fields) });
+      } // if the query selects fields
+    parts = extractor.extract(text);
 
     // Check for error codes in the result.  The error code is 0 if we
     // have data, and something else if we don't.
-    JSONObject error;
-    try
-      {
-        error = data.getJSONObject("error");
-      } // try
-    catch (Exception e)
-      {
-        throw new Exception("Server returned invalid response");
-      } // catch
-    int code;
-    try  
-      {
-        code = error.getInt("code");
-      } // try
-    catch (Exception e)
-      {
-        throw new Exception("Server failed to return status");
-      } // catch
+    int code = UshahidiUtils.statusCode(parts[0]);
     if (code != 0)
       {
         throw new Exception("Could not get data from server because "
-            + error.getString("message"));
+            + parts[1]);
       } // if (code != 0)
 
     // Grab all of the elements
-    JSONArray incidents =
-        data.getJSONObject("payload").getJSONArray("incidents");
+    if (parts[2] instanceof UshahidiIncident[])
+      return (UshahidiIncident[]) parts[2];
+    if (!(parts[2] instanceof JSONArray))
+      throw new Exception("Server returned invalid response");
+    JSONArray incidents = (JSONArray) parts[2];
     int len = incidents.length();
+    UshahidiIncident[] result = new UshahidiIncident[len];
     for (int i = 0; i < len; i++)
       {
-        UshahidiIncident nextIncident =
-            new UshahidiIncident((JSONObject) incidents.get(i));
-        this.incidents.addIncident(nextIncident);
-        int id = nextIncident.getId();
-        if (id > this.maxId)
-          this.maxId = id;
-        if (id < this.minId)
-          this.minId = id;
+        result[i] = new UshahidiIncident((JSONObject) incidents.get(i));
       } // for
-    return len;
-  } // fetchIncidents()
+    return result;
+  } // fetch(String)
 
   // +----------------+-------------------------------------------------
   // | Public Methods |
   // +----------------+
 
+  /**
+   * Wait up to timeout milliseconds for the first set of incidents.
+   *
+   * @param timeout
+   *            The number of milliseconds to wait.
+   * @return
+   *            true, if the first set of incidents is available; false,
+   *            if we gave up waiting.
+   * @exception Exception
+   *                If the first set of incidents could not be fetched.
+   */
+  public boolean awaitReady(long timeout)
+    throws Exception
+  {
+    if (this.initialFetch == null)
+      return true;
+    try
+      {
+        this.initialFetch.get(timeout, TimeUnit.MILLISECONDS);
+        return true;
+      } // try
+    catch (TimeoutException e)
+      {
+        return false;
+      } // catch (TimeoutException)
+    catch (ExecutionException e)
+      {
+        throw fetchFailure(e);
+      } // catch (ExecutionException)
+  } // awaitReady(long)
+
+  /**
+   * Turn streaming mode on or off.  In streaming mode, the client
+   * forgets each incident once nextIncident has returned it.  Since we
+   * only fetch more incidents when the unseen ones run out, a single
+   * pass over the server then holds at most one set of numIncidents
+   * incidents in memory.
+   *
+   * @param streaming
+   *            true, to release consumed incidents; false, to keep them.
+   */
+  public void setStreaming(boolean streaming)
+  {
+    // Wait for the initial fetch, since turning streaming on trims the
+    // list that the fetch appends to.  If the fetch failed, there is
+    // nothing left to race with, and the methods that read incidents
+    // report the failure.
+    try
+      {
+        this.ensureReady();
+      } // try
+    catch (Exception e)
+      {
+      } // catch (Exception)
+    this.incidents.setStreaming(streaming);
+  } // setStreaming(boolean)
+
   /**
    * Get all of the incidents.
    */
@@ -271,8 +573,9 @@ seen.
     // Fetch all remaining incidents into the list.
     try
       {
-        while (fetchIncidents() > 0)
-          ;
+        this.ensureReady();
+        while (!this.exhausted)
+          this.fetchPage();
       } // try
     catch (Exception e)
       {
@@ -287,13 +590,26 @@ seen.
    */
   public boolean hasMoreIncidents()
   {
-    // If the list has more incidents, we're set.
-    if (this.incidents.hasMoreIncidents())
-      return true;
-    // Otherwise, try to fetch some more incidents.
+    // Make sure that the first incidents have arrived.
     try
       {
-        return (this.fetchIncidents() > 0);
+        this.ensureReady();
+      } // try
+    catch (Exception e)
+      {
+        return false;
+      } // catch
+    // If the list has more incidents, we're set.  Otherwise, try to
+    // fetch some more incidents.
+    try
+      {
+        while (!this.incidents.hasMoreIncidents())
+          {
+            if (this.exhausted)
+              return false;
+            this.fetchPage();
+          } // while
+        return true;
       } // try
     catch (Exception e)
       {
@@ -310,18 +626,61 @@ seen.
   public UshahidiIncident nextIncident()
     throws Exception
   {
+    this.ensureReady();
     // If there aren't any unvisited incidents left
-    if (!this.incidents.hasMoreIncidents())
+    while (!this.incidents.hasMoreIncidents())
       {
         // Try to get some more
-        if (this.fetchIncidents() == 0)
+        if (this.exhausted)
           {
             throw new Exception("No incidents remain.");
           } // if we can't fetch any incidents
-      } // if no incidents remain
+        this.fetchPage();
+      } // while no incidents remain
 
     return this.incidents.nextIncident();
   } // nextIncident
 
+  /**
+   * Get a spliterator over the unseen incidents, all of which then
+   * count as seen.  The incidents we have already loaded come first.
+   * The rest are described by the range of ids below the smallest id
+   * we have seen, which the spliterator splits in half, so that a
+   * parallel stream fetches and processes several ranges at once.
+   * Queries that the server cannot answer in several sets use the
+   * default, sequential, spliterator.
+   *
+   * @return
+   *            A spliterator over the unseen incidents, in no specified
+   *            order.
+   * @exception IllegalStateException
+   *            If the first set of incidents cannot be fetched.  The
+   *            spliterator also throws one (from tryAdvance and
+   *            forEachRemaining) if a later set cannot be fetched.
+   */
+  public Spliterator<UshahidiIncident> spliterator()
+  {
+    try
+      {
+        this.ensureReady();
+      } // try
+    catch (Exception e)
+      {
+        throw new IllegalStateException("Could not fetch incidents from "
+                                        + this.server, e);
+      } // catch (Exception)
+
+    if (!this.query.pageable())
+      return UshahidiClient.super.spliterator();
+
+    UshahidiIncident[] loaded = this.incidents.takeRemaining();
+    int lo = this.query.lowestId();
+    int hi = this.exhausted ? lo : this.minId;
+    // The spliterator takes responsibility for every id below hi, so
+    // this client should not fetch any more.
+    this.exhausted = true;
+    return new UshahidiWebSpliterator(this, loaded, lo, hi);
+  } // spliterator()
+
 } // UshahidiWebClient
 
@@ -26,7 +26,7 @@ import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.stream.Collectors;
 
-import org.json.JSONObject;
+import org.json.JSONExtractor;
 
 /**
  * A mechanism for sending reports to Ushahidi Web servers.
@@ -47,6 +47,13 @@ public class UshahidiWebReporter
   static final DateTimeFormatter dateFormat =
       DateTimeFormatter.ofPattern("MM/dd/yyyy");
 
+  /**
+   * The parts of a response that we check: the status code and the
+   * error message.
+   */
+  static final JSONExtractor STATUS_PARTS =
+      new JSONExtractor(new String[] { "/error/code", "/error/message" });
+
   // +----------------+--------------------------------------------------
   // | Static Helpers |
   // +----------------+
@@ -161,31 +168,20 @@ public class UshahidiWebReporter
     // More experimentation
     // System.err.println("RESPONSE: " + response);
 
-    // Parse the response to figure out whether or not we succeeded.
-    JSONObject json;
-    JSONObject error;
-    int code;
+    // Check the response to figure out whether or not we succeeded.
+    Object[] status;
     try
       {
-        json = new JSONObject(response);
-        error = json.getJSONObject("error");
+        status = STATUS_PARTS.extract(response);
       } // try
     catch (Exception e)
       {
         throw new Exception("Server returned invalid response");
       } // catch
-    try  
-      {
-        code = error.getInt("code");
-      } // try
-    catch (Exception e)
-      {
-        throw new Exception("Server failed to return status");
-      } // catch
+    int code = UshahidiUtils.statusCode(status[0]);
     if (code != 0)
       {
-        throw new Exception("Could not add report because "
-            + error.getString("message"));
+        throw new Exception("Could not add report because " + status[1]);
       } // if (code != 0)
   } // submit(String)
 } // class UshahidiWebReporter
@@ -0,0 +1,189 @@
+/**
+ * Copyright (c) 2014 Samuel A. Rebelsky.  All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.grinnell.glimmer.ushahidi;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A spliterator over the incidents on an Ushahidi server whose ids fall
+ * in a particular range.  Splits by dividing the range of ids, so that
+ * each half can be fetched from the server independently.
+ *
+ * @version 0.1.0 of 24 September 2014
+ * @author Samuel A. Rebelsky
+ */
+class UshahidiWebSpliterator
+    implements Spliterator<UshahidiIncident>
+{
+  // +-------+----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * We rely on the server returning incidents from highest id to lowest
+   * id, just as UshahidiQuery.nextQuery does.  Each fetch asks for the
+   * incidents with ids below hi; the ones that are at least lo belong
+   * to this spliterator, and the smallest of them becomes the new hi.
+   * Of those, we provide only the ones that match the client's query.
+   * Once a fetch returns nothing, or returns an id below lo, the range
+   * is exhausted.
+   *
+   * Splitting a range smaller than a single fetch would cost more
+   * requests than it saves, so we only split ranges that span more
+   * than numIncidents ids.
+   */
+
+  // +--------+---------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The client used to fetch incidents.
+   */
+  UshahidiWebClient client;
+
+  /**
+   * Incidents that have been fetched but not yet provided.
+   */
+  UshahidiIncident[] buffer;
+
+  /**
+   * The index of the next incident in buffer.
+   */
+  int pos;
+
+  /**
+   * The smallest id in the range (inclusive).
+   */
+  int lo;
+
+  /**
+   * The largest id in the range (exclusive).  Ids at or above hi have
+   * already been fetched.
+   */
+  int hi;
+
+  // +--------------+---------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a spliterator that provides the incidents in buffer and then
+   * the incidents whose ids are at least lo and less than hi.
+   */
+  UshahidiWebSpliterator(UshahidiWebClient client, UshahidiIncident[] buffer,
+                         int lo, int hi)
+  {
+    this.client = client;
+    this.buffer = buffer;
+    this.pos = 0;
+    this.lo = lo;
+    this.hi = hi;
+  } // UshahidiWebSpliterator
+
+  // +---------+--------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Fetch the next set of incidents in the range into the buffer.
+   *
+   * @exception IllegalStateException
+   *            If the fetch fails.  Treating the range as exhausted
+   *            instead would silently drop its incidents.
+   */
+  void fill()
+  {
+    UshahidiIncident[] page;
+    try
+      {
+        page = this.client.fetch(
+            this.client.query.nextQuery(this.hi, this.client.numIncidents));
+      } // try
+    catch (Exception e)
+      {
+        throw new IllegalStateException("Could not fetch incidents below "
+                                        + this.hi, e);
+      } // catch (Exception)
+
+    int inRange = 0;
+    int count = 0;
+    int smallest = this.lo;
+    for (int i = 0; i < page.length; i++)
+      {
+        int id = page[i].getId();
+        if ((id >= this.lo) && (id < this.hi))
+          {
+            if ((inRange++ == 0) || (id < smallest))
+              smallest = id;
+            if (this.client.query.test(page[i]))
+              page[count++] = page[i];
+          } // if the incident is in range
+      } // for
+
+    this.buffer = Arrays.copyOf(page, count);
+    this.pos = 0;
+    if ((inRange < page.length) || (inRange == 0))
+      this.hi = this.lo;
+    else
+      this.hi = smallest;
+  } // fill()
+
+  // +---------------------+--------------------------------------------
+  // | Spliterator Methods |
+  // +---------------------+
+
+  public boolean tryAdvance(Consumer<? super UshahidiIncident> action)
+  {
+    while (this.pos == this.buffer.length)
+      {
+        if (this.hi <= this.lo)
+          return false;
+        this.fill();
+      } // while
+    action.accept(this.buffer[this.pos++]);
+    return true;
+  } // tryAdvance(Consumer)
+
+  public Spliterator<UshahidiIncident> trySplit()
+  {
+    if ((long) this.hi - this.lo <= Math.max(1, this.client.numIncidents))
+      return null;
+    int mid = (int) (((long) this.lo + this.hi) / 2);
+    UshahidiWebSpliterator lower =
+        new UshahidiWebSpliterator(this.client, UshahidiIncidentList.UI_ARRAY,
+                                   this.lo, mid);
+    this.lo = mid;
+    return lower;
+  } // trySplit()
+
+  public long estimateSize()
+  {
+    // Ids are distinct, so the range bounds the number of incidents.
+    return (this.buffer.length - this.pos) 
+           + Math.max(0L, (long) this.hi - this.lo);
+  } // estimateSize()
+
+  public int characteristics()
+  {
+    return Spliterator.NONNULL | Spliterator.DISTINCT;
+  } // characteristics()
+
+} // UshahidiWebSpliterator
@@ -0,0 +1,266 @@
+/**
+ * Copyright (c) 2014 Samuel A. Rebelsky.  All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.grinnell.glimmer.ushahidi;
+
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.zip.Dictionary;
+import org.json.zip.ZipArchive;
+import org.json.zip.ZipReader;
+import org.json.zip.ZipWriter;
+
+/**
+ * A client that reads incidents from a JSONzip stream, such as a log
+ * of incidents written with write or writeAll.  Incidents are read one
+ * at a time, as they are requested, so the stream may be much larger
+ * than memory.
+ *
+ * @version 0.1.0 of 25 September 2014
+ * @author Samuel A. Rebelsky
+ */
+public class UshahidiZipClient
+    implements UshahidiClient
+{
+  // +-------+----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * Each incident is one value in the stream, in the layout of the
+   * Ushahidi Web API (the same layout UshahidiIncidentWriter produces).
+   * Since the values share one compressor, keys such as
+   * "incidentdescription" are sent in full only once per stream.
+   *
+   * A log that is still being written can be read up to its last flush
+   * point.
+   *
+   * writeArchive and readArchive handle large collections instead.
+   * They split the incidents into chunks that are compressed
+   * separately (see ZipArchive), which costs some compression but lets
+   * every core work on a chunk at once.
+   */
+
+  // +--------+---------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The source of incidents.
+   */
+  ZipReader reader;
+
+  // +--------------+---------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a client that reads incidents from a stream.
+   */
+  public UshahidiZipClient(InputStream in)
+  {
+    this(in, null);
+  } // UshahidiZipClient(InputStream)
+
+  /**
+   * Create a client that reads incidents from a stream that was
+   * written with a dictionary.
+   *
+   * @param in
+   *            The stream.
+   * @param dictionary
+   *            The dictionary that the stream was written with, or null.
+   */
+  public UshahidiZipClient(InputStream in, Dictionary dictionary)
+  {
+    this.reader = new ZipReader(in, dictionary);
+  } // UshahidiZipClient(InputStream, Dictionary)
+
+  // +------------------------+-----------------------------------------
+  // | UshahidiClient Methods |
+  // +------------------------+
+
+  /**
+   * Get all of the unseen incidents, which then count as seen.
+   *
+   * @return
+   *            The incidents that have not yet been returned by
+   *            nextIncident, in the order of the stream.
+   * @exception IllegalStateException
+   *            If the stream cannot be read.  Its cause is the
+   *            underlying failure.  Returning the incidents before the
+   *            problem instead would hide a truncated or corrupt stream.
+   */
+  public UshahidiIncident[] getIncidents()
+  {
+    ArrayList<UshahidiIncident> incidents = new ArrayList<UshahidiIncident>();
+    try
+      {
+        // We ask the reader directly, since hasMoreIncidents treats an
+        // unreadable stream as an empty one.
+        while (this.reader.hasNext())
+          incidents.add(this.nextIncident());
+      } // try
+    catch (Exception e)
+      {
+        throw new IllegalStateException("Could not read the stream after "
+                                        + incidents.size() + " incidents",
+                                        e);
+      } // catch (Exception)
+    return incidents.toArray(UshahidiIncidentList.UI_ARRAY);
+  } // getIncidents()
+
+  /**
+   * Determine if any unseen incidents remain.
+   *
+   * @return true, if incidents remain; false, otherwise (including
+   *         when the stream cannot be read).
+   */
+  public boolean hasMoreIncidents()
+  {
+    try
+      {
+        return this.reader.hasNext();
+      } // try
+    catch (JSONException e)
+      {
+        return false;
+      } // catch (JSONException)
+  } // hasMoreIncidents()
+
+  /**
+   * Get the next unseen incident.
+   *
+   * @return
+   *            The next incident in the stream.
+   * @exception Exception
+   *            If no incidents remain, or the stream cannot be read.
+   */
+  public UshahidiIncident nextIncident()
+    throws Exception
+  {
+    return new UshahidiIncident((JSONObject) this.reader.next());
+  } // nextIncident()
+
+  // +----------------+-------------------------------------------------
+  // | Static Methods |
+  // +----------------+
+
+  /**
+   * Write one incident to a JSONzip stream.
+   *
+   * @param incident
+   *            The incident to write.
+   * @param zip
+   *            The stream.
+   * @exception IOException
+   *            If the incident cannot be written.
+   */
+  public static void write(UshahidiIncident incident, ZipWriter zip)
+    throws IOException
+  {
+    zip.write(new JSONObject(incident.toJSONString()));
+  } // write(UshahidiIncident, ZipWriter)
+
+  /**
+   * Write all of the unseen incidents of a client to a JSONzip stream,
+   * one at a time.
+   *
+   * @param client
+   *            The client whose incidents we write.
+   * @param zip
+   *            The stream.
+   * @return
+   *            The number of incidents written.
+   * @exception Exception
+   *            If the incidents cannot be written, or the client cannot
+   *            provide an incident.
+   */
+  public static int writeAll(UshahidiClient client, ZipWriter zip)
+    throws Exception
+  {
+    int count = 0;
+    while (client.hasMoreIncidents())
+      {
+        write(client.nextIncident(), zip);
+        count++;
+      } // while
+    return count;
+  } // writeAll(UshahidiClient, ZipWriter)
+
+  /**
+   * Write incidents as a chunked JSONzip archive, compressing the
+   * chunks in parallel.
+   *
+   * @param incidents
+   *            The incidents to write.
+   * @param chunkSize
+   *            The number of incidents in each chunk.
+   * @param dictionary
+   *            The dictionary that every chunk starts from, or null.
+   * @param out
+   *            The destination of the archive.  It is not closed.
+   * @exception IOException
+   *            If the archive cannot be written.
+   */
+  public static void writeArchive(UshahidiIncident[] incidents,
+                                  int chunkSize, Dictionary dictionary,
+                                  OutputStream out)
+    throws IOException
+  {
+    JSONArray values = new JSONArray();
+    Arrays.stream(incidents)
+          .parallel()
+          .map((incident) -> new JSONObject(incident.toJSONString()))
+          .forEachOrdered(values::put);
+    ZipArchive.write(values, chunkSize, dictionary, out);
+  } // writeArchive(UshahidiIncident[], int, Dictionary, OutputStream)
+
+  /**
+   * Read all of the incidents of a chunked JSONzip archive,
+   * decompressing the chunks in parallel.
+   *
+   * @param archive
+   *            The archive.
+   * @param dictionary
+   *            The dictionary that the archive was written with, or null.
+   * @return
+   *            The incidents, in the order they were written.
+   * @exception Exception
+   *            If the archive cannot be read, or holds something that
+   *            is not an incident.
+   */
+  public static UshahidiIncident[] readArchive(ByteBuffer archive,
+                                               Dictionary dictionary)
+    throws Exception
+  {
+    JSONArray values = new ZipArchive(archive, dictionary).readAll();
+    UshahidiIncident[] incidents = new UshahidiIncident[values.length()];
+    for (int i = 0; i < incidents.length; i++)
+      incidents[i] = new UshahidiIncident(values.getJSONObject(i));
+    return incidents;
+  } // readArchive(ByteBuffer, Dictionary)
+
+} // UshahidiZipClient
@@ -29,6 +29,7 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
@@ -43,6 +44,12 @@ import java.util.Map;
  * <code>Number</code>, <code>String</code>, or the
  * <code>JSONObject.NULL object</code>.
  * <p>
+ * An array whose values are all Integers, all Longs, or all Doubles keeps
+ * them in an <code>int</code>, <code>long</code>, or <code>double</code>
+ * array, so that <code>getInt</code>, <code>getLong</code>, and
+ * <code>getDouble</code> need not unbox them. Putting a value of any other
+ * type into such an array converts it to the general form.
+ * <p>
  * The constructor can convert a JSON text into a Java object. The
  * <code>toString</code> method converts to JSON text.
  * <p>
@@ -80,15 +87,37 @@ import java.util.Map;
 public class JSONArray {
 
     /**
-     * The arrayList where the JSONArray's properties are kept.
+     * The arrayList where the JSONArray's properties are kept, or null if
+     * the properties are all numbers of one type.
      */
-    private final ArrayList myArrayList;
+    private ArrayList myArrayList;
+
+    /**
+     * The properties, if they are all Doubles.
+     */
+    private double[] myDoubles;
+
+    /**
+     * The properties, if they are all Integers.
+     */
+    private int[] myInts;
+
+    /**
+     * The number of properties kept in myDoubles, myInts, or myLongs.
+     */
+    private int myLength;
+
+    /**
+     * The properties, if they are all Longs.
+     */
+    private long[] myLongs;
 
     /**
      * Construct an empty JSONArray.
      */
     public JSONArray() {
-        this.myArrayList = new ArrayList();
+        this.myArrayList = null;
+        this.myLength = 0;
     }
 
     /**
@@ -109,10 +138,10 @@ public class JSONArray {
             for (;;) {
                 if (x.nextClean() == ',') {
                     x.back();
-                    this.myArrayList.add(JSONObject.NULL);
+                    this.add(JSONObject.NULL);
                 } else {
                     x.back();
-                    this.myArrayList.add(x.nextValue());
+                    this.add(x.nextValue());
                 }
                 switch (x.nextClean()) {
                 case ',':
@@ -141,7 +170,7 @@ public class JSONArray {
      *             If there is a syntax error.
      */
     public JSONArray(String source) throws JSONException {
-        this(new JSONTokener(source));
+        this(JSONTokener.local(source));
     }
 
     /**
@@ -151,11 +180,11 @@ public class JSONArray {
      *            A Collection.
      */
     public JSONArray(Collection collection) {
-        this.myArrayList = new ArrayList();
+        this();
         if (collection != null) {
             Iterator iter = collection.iterator();
             while (iter.hasNext()) {
-                this.myArrayList.add(JSONObject.wrap(iter.next()));
+                this.add(JSONObject.wrap(iter.next()));
             }
         }
     }
@@ -168,7 +197,16 @@ public class JSONArray {
      */
     public JSONArray(Object array) throws JSONException {
         this();
-        if (array.getClass().isArray()) {
+        if (array instanceof int[]) {
+            this.myInts = ((int[]) array).clone();
+            this.myLength = this.myInts.length;
+        } else if (array instanceof long[]) {
+            this.myLongs = ((long[]) array).clone();
+            this.myLength = this.myLongs.length;
+        } else if (array instanceof double[]) {
+            this.myDoubles = ((double[]) array).clone();
+            this.myLength = this.myDoubles.length;
+        } else if (array.getClass().isArray()) {
             int length = Array.getLength(array);
             for (int i = 0; i < length; i += 1) {
                 this.put(JSONObject.wrap(Array.get(array, i)));
@@ -179,6 +217,116 @@ public class JSONArray {
         }
     }
 
+    /**
+     * Append a value, keeping it unboxed if it is an Integer, Long, or
+     * Double and the other values are too.
+     */
+    private void add(Object value) {
+        if (this.myArrayList == null) {
+            if (value instanceof Integer) {
+                this.addInt(((Integer) value).intValue());
+                return;
+            }
+            if (value instanceof Long) {
+                this.addLong(((Long) value).longValue());
+                return;
+            }
+            if (value instanceof Double) {
+                this.addDouble(((Double) value).doubleValue());
+                return;
+            }
+            this.box();
+        }
+        this.myArrayList.add(value);
+    }
+
+    /**
+     * Append a double value, unboxed if the other values are doubles.
+     */
+    private void addDouble(double value) {
+        if (this.myArrayList == null && this.myDoubles == null
+                && this.myLength == 0) {
+            this.myInts = null;
+            this.myLongs = null;
+            this.myDoubles = new double[8];
+        }
+        if (this.myDoubles == null) {
+            this.box();
+            this.myArrayList.add(Double.valueOf(value));
+            return;
+        }
+        if (this.myLength == this.myDoubles.length) {
+            this.myDoubles = Arrays.copyOf(this.myDoubles,
+                    Math.max(8, this.myLength * 2));
+        }
+        this.myDoubles[this.myLength] = value;
+        this.myLength += 1;
+    }
+
+    /**
+     * Append an int value, unboxed if the other values are ints.
+     */
+    private void addInt(int value) {
+        if (this.myArrayList == null && this.myInts == null
+                && this.myLength == 0) {
+            this.myDoubles = null;
+            this.myLongs = null;
+            this.myInts = new int[8];
+        }
+        if (this.myInts == null) {
+            this.box();
+            this.myArrayList.add(Integer.valueOf(value));
+            return;
+        }
+        if (this.myLength == this.myInts.length) {
+            this.myInts = Arrays.copyOf(this.myInts,
+                    Math.max(8, this.myLength * 2));
+        }
+        this.myInts[this.myLength] = value;
+        this.myLength += 1;
+    }
+
+    /**
+     * Append a long value, unboxed if the other values are longs.
+     */
+    private void addLong(long value) {
+        if (this.myArrayList == null && this.myLongs == null
+                && this.myLength == 0) {
+            this.myDoubles = null;
+            this.myInts = null;
+            this.myLongs = new long[8];
+        }
+        if (this.myLongs == null) {
+            this.box();
+            this.myArrayList.add(Long.valueOf(value));
+            return;
+        }
+        if (this.myLength == this.myLongs.length) {
+            this.myLongs = Arrays.copyOf(this.myLongs,
+                    Math.max(8, this.myLength * 2));
+        }
+        this.myLongs[this.myLength] = value;
+        this.myLength += 1;
+    }
+
+    /**
+     * Move the values into myArrayList, boxing them if they are numbers.
+     */
+    private void box() {
+        if (this.myArrayList != null) {
+            return;
+        }
+        ArrayList list = new ArrayList(Math.max(this.myLength, 10));
+        for (int i = 0; i < this.myLength; i += 1) {
+            list.add(this.opt(i));
+        }
+        this.myArrayList = list;
+        this.myDoubles = null;
+        this.myInts = null;
+        this.myLongs = null;
+        this.myLength = 0;
+    }
+
     /**
      * Get the object value associated with an index.
      *
@@ -232,6 +380,13 @@ public class JSONArray {
      *             to a number.
      */
     public double getDouble(int index) throws JSONException {
+        if (index >= 0 && index < this.myLength) {
+            if (this.myDoubles != null) {
+                return this.myDoubles[index];
+            }
+            return this.myInts != null ? this.myInts[index]
+                    : (double) this.myLongs[index];
+        }
         Object object = this.get(index);
         try {
             return object instanceof Number ? ((Number) object).doubleValue()
@@ -251,6 +406,13 @@ public class JSONArray {
      *             If the key is not found or if the value is not a number.
      */
     public int getInt(int index) throws JSONException {
+        if (index >= 0 && index < this.myLength) {
+            if (this.myInts != null) {
+                return this.myInts[index];
+            }
+            return this.myLongs != null ? (int) this.myLongs[index]
+                    : (int) this.myDoubles[index];
+        }
         Object object = this.get(index);
         try {
             return object instanceof Number ? ((Number) object).intValue()
@@ -307,6 +469,13 @@ public class JSONArray {
      *             to a number.
      */
     public long getLong(int index) throws JSONException {
+        if (index >= 0 && index < this.myLength) {
+            if (this.myLongs != null) {
+                return this.myLongs[index];
+            }
+            return this.myInts != null ? this.myInts[index]
+                    : (long) this.myDoubles[index];
+        }
         Object object = this.get(index);
         try {
             return object instanceof Number ? ((Number) object).longValue()
@@ -363,7 +532,7 @@ public class JSONArray {
             if (i > 0) {
                 sb.append(separator);
             }
-            sb.append(JSONObject.valueToString(this.myArrayList.get(i)));
+            sb.append(JSONObject.valueToString(this.opt(i)));
         }
         return sb.toString();
     }
@@ -374,7 +543,8 @@ public class JSONArray {
      * @return The length (or size).
      */
     public int length() {
-        return this.myArrayList.size();
+        return this.myArrayList != null ? this.myArrayList.size()
+                : this.myLength;
     }
 
     /**
@@ -385,8 +555,19 @@ public class JSONArray {
      * @return An object value, or null if there is no object at that index.
      */
     public Object opt(int index) {
-        return (index < 0 || index >= this.length()) ? null : this.myArrayList
-                .get(index);
+        if (index < 0 || index >= this.length()) {
+            return null;
+        }
+        if (this.myArrayList != null) {
+            return this.myArrayList.get(index);
+        }
+        if (this.myInts != null) {
+            return Integer.valueOf(this.myInts[index]);
+        }
+        if (this.myLongs != null) {
+            return Long.valueOf(this.myLongs[index]);
+        }
+        return Double.valueOf(this.myDoubles[index]);
     }
 
     /**
@@ -608,9 +789,10 @@ public class JSONArray {
      * @return this.
      */
     public JSONArray put(double value) throws JSONException {
-        Double d = new Double(value);
-        JSONObject.testValidity(d);
-        this.put(d);
+        if (Double.isInfinite(value) || Double.isNaN(value)) {
+            throw new JSONException("JSON does not allow non-finite numbers.");
+        }
+        this.addDouble(value);
         return this;
     }
 
@@ -622,7 +804,7 @@ public class JSONArray {
      * @return this.
      */
     public JSONArray put(int value) {
-        this.put(new Integer(value));
+        this.addInt(value);
         return this;
     }
 
@@ -634,7 +816,7 @@ public class JSONArray {
      * @return this.
      */
     public JSONArray put(long value) {
-        this.put(new Long(value));
+        this.addLong(value);
         return this;
     }
 
@@ -661,7 +843,7 @@ public class JSONArray {
      * @return this.
      */
     public JSONArray put(Object value) {
-        this.myArrayList.add(value);
+        this.add(value);
         return this;
     }
 
@@ -714,7 +896,7 @@ public class JSONArray {
      *             If the index is negative or if the value is not finite.
      */
     public JSONArray put(int index, double value) throws JSONException {
-        this.put(index, new Double(value));
+        this.put(index, Double.valueOf(value));
         return this;
     }
 
@@ -732,7 +914,7 @@ public class JSONArray {
      *             If the index is negative.
      */
     public JSONArray put(int index, int value) throws JSONException {
-        this.put(index, new Integer(value));
+        this.put(index, Integer.valueOf(value));
         return this;
     }
 
@@ -750,7 +932,7 @@ public class JSONArray {
      *             If the index is negative.
      */
     public JSONArray put(int index, long value) throws JSONException {
-        this.put(index, new Long(value));
+        this.put(index, Long.valueOf(value));
         return this;
     }
 
@@ -794,7 +976,16 @@ public class JSONArray {
             throw new JSONException("JSONArray[" + index + "] not found.");
         }
         if (index < this.length()) {
-            this.myArrayList.set(index, value);
+            if (this.myInts != null && value instanceof Integer) {
+                this.myInts[index] = ((Integer) value).intValue();
+            } else if (this.myLongs != null && value instanceof Long) {
+                this.myLongs[index] = ((Long) value).longValue();
+            } else if (this.myDoubles != null && value instanceof Double) {
+                this.myDoubles[index] = ((Double) value).doubleValue();
+            } else {
+                this.box();
+                this.myArrayList.set(index, value);
+            }
         } else {
             while (index != this.length()) {
                 this.put(JSONObject.NULL);
@@ -814,7 +1005,25 @@ public class JSONArray {
      */
     public Object remove(int index) {
         Object o = this.opt(index);
-        this.myArrayList.remove(index);
+        if (this.myArrayList != null) {
+            this.myArrayList.remove(index);
+        } else if (o == null) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+                    + this.myLength);
+        } else {
+            int moved = this.myLength - index - 1;
+            if (this.myInts != null) {
+                System.arraycopy(this.myInts, index + 1, this.myInts, index,
+                        moved);
+            } else if (this.myLongs != null) {
+                System.arraycopy(this.myLongs, index + 1, this.myLongs, index,
+                        moved);
+            } else {
+                System.arraycopy(this.myDoubles, index + 1, this.myDoubles,
+                        index, moved);
+            }
+            this.myLength -= 1;
+        }
         return o;
     }
 
@@ -913,7 +1122,7 @@ public class JSONArray {
             writer.write('[');
 
             if (length == 1) {
-                JSONObject.writeValue(writer, this.myArrayList.get(0),
+                JSONObject.writeValue(writer, this.opt(0),
                         indentFactor, indent);
             } else if (length != 0) {
                 final int newindent = indent + indentFactor;
@@ -926,7 +1135,7 @@ public class JSONArray {
                         writer.write('\n');
                     }
                     JSONObject.indent(writer, newindent);
-                    JSONObject.writeValue(writer, this.myArrayList.get(i),
+                    JSONObject.writeValue(writer, this.opt(i),
                             indentFactor, newindent);
                     commanate = true;
                 }
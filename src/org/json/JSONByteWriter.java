@@ -0,0 +1,523 @@
+package org.json;
+
+/*
+Copyright (c) 2014 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * JSONByteWriter encodes JSON values straight to UTF-8 bytes, without going
+ * through a java.io.Writer. It produces the same text as
+ * <code>JSONObject.toString()</code>.
+ * <p>
+ * The bytes collect in an internal buffer. If the JSONByteWriter was made
+ * with an OutputStream, the buffer is written to the stream whenever it
+ * fills and on <code>flush</code>; otherwise the buffer grows, and its
+ * contents can be taken with <code>toByteArray</code> or
+ * <code>toByteBuffer</code>. Either way, <code>reset</code> makes the
+ * JSONByteWriter ready for the next text, keeping its buffer.
+ * <p>
+ * The encoded form of each key (quotes and colon included) is remembered,
+ * so the keys that repeat from object to object are encoded only once.
+ * A JSONByteWriter is not safe for use by several threads.
+ * @author JSON.org
+ * @version 2014-09-25
+ */
+public class JSONByteWriter {
+
+    /**
+     * The default size of the buffer.
+     */
+    private static final int bufferSize = 8192;
+
+    /**
+     * The largest number of encoded keys that will be remembered.
+     */
+    private static final int keyLimit = 1024;
+
+    /**
+     * For each ASCII character, 0 if it may be copied as is, or else the
+     * character that follows the backslash in its escape. 'u' means a
+     * \\u00XX escape. '/' is marked because it must be escaped after '<'.
+     */
+    private static final byte escapes[] = new byte[128];
+
+    /**
+     * Hexadecimal digits, for \\u escapes.
+     */
+    private static final byte hex[] = {
+        '0', '1', '2', '3', '4', '5', '6', '7',
+        '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+    };
+
+    static {
+        for (int i = 0; i < ' '; i += 1) {
+            escapes[i] = 'u';
+        }
+        escapes['\b'] = 'b';
+        escapes['\t'] = 't';
+        escapes['\n'] = 'n';
+        escapes['\f'] = 'f';
+        escapes['\r'] = 'r';
+        escapes['"'] = '"';
+        escapes['\\'] = '\\';
+        escapes['/'] = '/';
+    }
+
+    /**
+     * The bytes not yet written to the stream.
+     */
+    private byte buffer[];
+
+    /**
+     * The number of bytes in use in the buffer.
+     */
+    private int count;
+
+    /**
+     * The stream that receives the bytes, or null to keep them.
+     */
+    private final OutputStream out;
+
+    /**
+     * The encoded forms of keys that have been written.
+     */
+    private final HashMap keys;
+
+    /**
+     * Make a JSONByteWriter that keeps everything it writes in its buffer.
+     */
+    public JSONByteWriter() {
+        this(null, bufferSize);
+    }
+
+    /**
+     * Make a JSONByteWriter that writes to a stream.
+     * @param out The stream that will receive the bytes.
+     */
+    public JSONByteWriter(OutputStream out) {
+        this(out, bufferSize);
+    }
+
+    /**
+     * Make a JSONByteWriter that writes to a stream through a buffer of a
+     * given size.
+     * @param out The stream that will receive the bytes, or null.
+     * @param size The initial size of the buffer.
+     */
+    public JSONByteWriter(OutputStream out, int size) {
+        this.buffer = new byte[Math.max(size, 16)];
+        this.count = 0;
+        this.out = out;
+        this.keys = new HashMap();
+    }
+
+    /**
+     * Make room in the buffer for n more bytes.
+     * @param n The number of bytes needed.
+     * @throws IOException
+     */
+    private void require(int n) throws IOException {
+        if (this.count + n <= this.buffer.length) {
+            return;
+        }
+        if (this.out != null) {
+            this.out.write(this.buffer, 0, this.count);
+            this.count = 0;
+            if (n <= this.buffer.length) {
+                return;
+            }
+        }
+        byte grown[] = new byte[Math.max(this.buffer.length * 2,
+                this.count + n)];
+        System.arraycopy(this.buffer, 0, grown, 0, this.count);
+        this.buffer = grown;
+    }
+
+    /**
+     * Write one ASCII character.
+     */
+    private void put(char c) throws IOException {
+        if (this.count == this.buffer.length) {
+            this.require(1);
+        }
+        this.buffer[this.count] = (byte) c;
+        this.count += 1;
+    }
+
+    /**
+     * Write an ASCII string, such as a number or literal.
+     */
+    private void putAscii(String s) throws IOException {
+        int length = s.length();
+        this.require(length);
+        for (int i = 0; i < length; i += 1) {
+            this.buffer[this.count + i] = (byte) s.charAt(i);
+        }
+        this.count += length;
+    }
+
+    /**
+     * Write a long in decimal.
+     */
+    private void putLong(long l) throws IOException {
+        if (l == Long.MIN_VALUE) {
+            this.putAscii(Long.toString(l));
+            return;
+        }
+        this.require(20);
+        long n = l < 0 ? -l : l;
+        int digits = 1;
+        for (long m = n; m >= 10; m /= 10) {
+            digits += 1;
+        }
+        if (l < 0) {
+            this.buffer[this.count] = '-';
+            this.count += 1;
+        }
+        int end = this.count + digits;
+        for (int i = end - 1; i >= this.count; i -= 1) {
+            this.buffer[i] = (byte) ('0' + n % 10);
+            n /= 10;
+        }
+        this.count = end;
+    }
+
+    /**
+     * Write a string in quotes, with the same escapes as
+     * <code>JSONObject.quote</code>, encoded in UTF-8.
+     * @param string A string.
+     * @throws IOException
+     */
+    private void putQuoted(String string) throws IOException {
+        int length = string.length();
+        this.put('"');
+        int i = 0;
+        while (i < length) {
+
+// Copy the longest run of characters that need no attention.
+
+            this.require(length - i);
+            byte b[] = this.buffer;
+            int n = this.count;
+            char c = 0;
+            while (i < length) {
+                c = string.charAt(i);
+                if (c >= 128 || escapes[c] != 0) {
+                    break;
+                }
+                b[n] = (byte) c;
+                n += 1;
+                i += 1;
+            }
+            this.count = n;
+            if (i == length) {
+                break;
+            }
+            this.require(12);
+            b = this.buffer;
+            n = this.count;
+            if (c < 128) {
+                byte e = escapes[c];
+                if (e == '/') {
+                    if (i > 0 && string.charAt(i - 1) == '<') {
+                        b[n++] = '\\';
+                    }
+                    b[n++] = '/';
+                } else if (e == 'u') {
+                    n = this.unicodeEscape(c, n);
+                } else {
+                    b[n++] = '\\';
+                    b[n++] = e;
+                }
+            } else if ((c >= '\u0080' && c < '\u00a0')
+                    || (c >= '\u2000' && c < '\u2100')) {
+                n = this.unicodeEscape(c, n);
+            } else if (c < 0x800) {
+                b[n++] = (byte) (0xc0 | (c >> 6));
+                b[n++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(string.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, string.charAt(i + 1));
+                i += 1;
+                b[n++] = (byte) (0xf0 | (cp >> 18));
+                b[n++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                b[n++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                b[n++] = (byte) (0x80 | (cp & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                b[n++] = '?';
+            } else {
+                b[n++] = (byte) (0xe0 | (c >> 12));
+                b[n++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                b[n++] = (byte) (0x80 | (c & 0x3f));
+            }
+            this.count = n;
+            i += 1;
+        }
+        this.put('"');
+    }
+
+    /**
+     * Put a \\uhhhh escape into the buffer at n. The buffer must have room.
+     * @return The index after the escape.
+     */
+    private int unicodeEscape(char c, int n) {
+        byte b[] = this.buffer;
+        b[n++] = '\\';
+        b[n++] = 'u';
+        b[n++] = hex[(c >> 12) & 0xf];
+        b[n++] = hex[(c >> 8) & 0xf];
+        b[n++] = hex[(c >> 4) & 0xf];
+        b[n++] = hex[c & 0xf];
+        return n;
+    }
+
+    /**
+     * Write a key, its quotes, and the colon that follows it.
+     * @param key A key string.
+     * @throws IOException
+     */
+    private void putKey(String key) throws IOException {
+        byte encoded[] = (byte[]) this.keys.get(key);
+        if (encoded == null) {
+
+// Make room for the key, so that the buffer is not flushed while the key is
+// being encoded. No character takes more than 6 bytes, but putQuoted asks
+// for 12 before each character that needs attention, so that is what we
+// must reserve.
+
+            this.require(key.length() * 12 + 3);
+            int start = this.count;
+            this.putQuoted(key);
+            this.put(':');
+            if (this.keys.size() < keyLimit) {
+                encoded = new byte[this.count - start];
+                System.arraycopy(this.buffer, start, encoded, 0,
+                        encoded.length);
+                this.keys.put(key, encoded);
+            }
+            return;
+        }
+        this.require(encoded.length);
+        System.arraycopy(encoded, 0, this.buffer, this.count, encoded.length);
+        this.count += encoded.length;
+    }
+
+    /**
+     * Write a JSONObject.
+     */
+    private void putObject(JSONObject jo) throws JSONException, IOException {
+        boolean commanate = false;
+        Iterator keys = jo.keys();
+        this.put('{');
+        while (keys.hasNext()) {
+            String key = keys.next().toString();
+            if (commanate) {
+                this.put(',');
+            }
+            this.putKey(key);
+            this.putValue(jo.opt(key));
+            commanate = true;
+        }
+        this.put('}');
+    }
+
+    /**
+     * Write a JSONArray.
+     */
+    private void putArray(JSONArray ja) throws JSONException, IOException {
+        int length = ja.length();
+        this.put('[');
+        for (int i = 0; i < length; i += 1) {
+            if (i > 0) {
+                this.put(',');
+            }
+            this.putValue(ja.opt(i));
+        }
+        this.put(']');
+    }
+
+    /**
+     * Write any value, following the rules of
+     * <code>JSONObject.writeValue</code>.
+     */
+    private void putValue(Object value) throws JSONException, IOException {
+        if (value == null || value.equals(null)) {
+            this.putAscii("null");
+        } else if (value instanceof String) {
+            this.putQuoted((String) value);
+        } else if (value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+            this.putLong(((Number) value).longValue());
+        } else if (value instanceof JSONObject) {
+            this.putObject((JSONObject) value);
+        } else if (value instanceof JSONArray) {
+            this.putArray((JSONArray) value);
+        } else if (value instanceof Map) {
+            this.putObject(new JSONObject((Map) value));
+        } else if (value instanceof Collection) {
+            this.putArray(new JSONArray((Collection) value));
+        } else if (value.getClass().isArray()) {
+            this.putArray(new JSONArray(value));
+        } else if (value instanceof Number) {
+            this.putAscii(JSONObject.numberToString((Number) value));
+        } else if (value instanceof Boolean) {
+            this.putAscii(value.toString());
+        } else if (value instanceof JSONString) {
+            Object o;
+            try {
+                o = ((JSONString) value).toJSONString();
+            } catch (Exception e) {
+                throw new JSONException(e);
+            }
+            if (o != null) {
+                this.putRaw(o.toString());
+            } else {
+                this.putQuoted(value.toString());
+            }
+        } else {
+            this.putQuoted(value.toString());
+        }
+    }
+
+    /**
+     * Write text that is already JSON, encoded in UTF-8.
+     */
+    private void putRaw(String text) throws IOException {
+        byte bytes[] = text.getBytes("UTF-8");
+        this.require(bytes.length);
+        System.arraycopy(bytes, 0, this.buffer, this.count, bytes.length);
+        this.count += bytes.length;
+    }
+
+    /**
+     * Write a JSONObject.
+     * @param jo A JSONObject.
+     * @return this
+     * @throws JSONException If the object contains an invalid number, or if
+     *  the stream cannot be written.
+     */
+    public JSONByteWriter write(JSONObject jo) throws JSONException {
+        return this.write((Object) jo);
+    }
+
+    /**
+     * Write a JSONArray.
+     * @param ja A JSONArray.
+     * @return this
+     * @throws JSONException If the array contains an invalid number, or if
+     *  the stream cannot be written.
+     */
+    public JSONByteWriter write(JSONArray ja) throws JSONException {
+        return this.write((Object) ja);
+    }
+
+    /**
+     * Write any value that a JSONObject may hold.
+     * @param value The value to write.
+     * @return this
+     * @throws JSONException If the value is or contains an invalid number,
+     *  or if the stream cannot be written.
+     */
+    public JSONByteWriter write(Object value) throws JSONException {
+        try {
+            this.putValue(value);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this;
+    }
+
+    /**
+     * Write a byte between texts, such as a newline.
+     * @param c An ASCII character.
+     * @return this
+     * @throws JSONException If the stream cannot be written.
+     */
+    public JSONByteWriter separator(char c) throws JSONException {
+        try {
+            this.put(c);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this;
+    }
+
+    /**
+     * Write the buffered bytes to the stream, if there is one, and flush it.
+     * @throws JSONException If the stream cannot be written.
+     */
+    public void flush() throws JSONException {
+        if (this.out == null) {
+            return;
+        }
+        try {
+            this.out.write(this.buffer, 0, this.count);
+            this.count = 0;
+            this.out.flush();
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+    /**
+     * Discard the buffered bytes, keeping the buffer and the encoded keys.
+     */
+    public void reset() {
+        this.count = 0;
+    }
+
+    /**
+     * Get the number of buffered bytes.
+     * @return The number of bytes written since the last flush or reset.
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Get a copy of the buffered bytes.
+     * @return A new array holding the bytes.
+     */
+    public byte[] toByteArray() {
+        byte bytes[] = new byte[this.count];
+        System.arraycopy(this.buffer, 0, bytes, 0, this.count);
+        return bytes;
+    }
+
+    /**
+     * Get the buffered bytes without copying them. The result is only valid
+     * until the next call that writes or resets.
+     * @return A ByteBuffer over the buffered bytes.
+     */
+    public ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(this.buffer, 0, this.count);
+    }
+}
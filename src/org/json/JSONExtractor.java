@@ -0,0 +1,400 @@
+package org.json;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+/**
+ * A JSONExtractor pulls a few values out of a JSON text without building the
+ * rest of it. The values are named by JSON Pointers (RFC 6901), such as
+ * <code>"/error/code"</code> or <code>"/payload/incidents/0"</code>. Only
+ * the values that are named are constructed; everything else is skipped a
+ * token at a time. Once every named value has been found, the rest of the
+ * text is not read at all, so it is not checked for syntax errors.
+ * <p>
+ * A JSONExtractor does not change once it is made, so one can be shared by
+ * many threads.
+ * <pre>
+ * JSONExtractor status = new JSONExtractor(new String[] {
+ *     "/error/code", "/error/message" });
+ * Object[] values = status.extract(responseText);
+ * </pre>
+ * @author JSON.org
+ * @version 2014-09-25
+ */
+public class JSONExtractor {
+
+    /**
+     * A ValueReader reads the value that a pointer names, in place of
+     * JSONTokener.nextValue. It can be used to convert a large value as it
+     * is read rather than building it first.
+     */
+    public interface ValueReader {
+
+        /**
+         * Read the next value.
+         *
+         * @param x
+         *            A JSONTokener positioned at the value.
+         * @return The value.
+         * @throws JSONException
+         *             If the value cannot be read.
+         */
+        Object read(JSONTokener x) throws JSONException;
+    }
+
+    /**
+     * A step in one or more pointers.
+     */
+    private static final class Node {
+
+        /**
+         * The steps that follow this one.
+         */
+        Node[] children = new Node[0];
+
+        /**
+         * The array index that this step names, or -1 if it is not an index.
+         */
+        int index = -1;
+
+        /**
+         * The key that this step names.
+         */
+        String name;
+
+        /**
+         * The way to read the value at this step, or null to use nextValue.
+         */
+        ValueReader reader;
+
+        /**
+         * The position in the result of the value at this step, or -1 if no
+         * pointer ends here.
+         */
+        int slot = -1;
+
+        /**
+         * Find the child step with a key.
+         */
+        Node child(String key) {
+            for (int i = 0; i < this.children.length; i += 1) {
+                if (this.children[i].name.equals(key)) {
+                    return this.children[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Find the child step with an array index.
+         */
+        Node child(int index) {
+            for (int i = 0; i < this.children.length; i += 1) {
+                if (this.children[i].index == index) {
+                    return this.children[i];
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The number of pointers.
+     */
+    private final int count;
+
+    /**
+     * The first step of every pointer.
+     */
+    private final Node root;
+
+
+    /**
+     * Construct a JSONExtractor for some JSON Pointers.
+     *
+     * @param pointers
+     *            An array of JSON Pointers. Each pointer is either empty or
+     *            begins with <code>/</code>.
+     * @throws JSONException
+     *             If a pointer is not well formed.
+     */
+    public JSONExtractor(String[] pointers) throws JSONException {
+        this(pointers, null);
+    }
+
+
+    /**
+     * Construct a JSONExtractor for some JSON Pointers, reading some of the
+     * values in a special way.
+     *
+     * @param pointers
+     *            An array of JSON Pointers. Each pointer is either empty or
+     *            begins with <code>/</code>.
+     * @param readers
+     *            An array with a ValueReader (or null, to use nextValue) for
+     *            each pointer, or null to use nextValue for all of them.
+     * @throws JSONException
+     *             If a pointer is not well formed.
+     */
+    public JSONExtractor(String[] pointers, ValueReader[] readers)
+            throws JSONException {
+        this.count = pointers.length;
+        this.root = new Node();
+        for (int i = 0; i < pointers.length; i += 1) {
+            String pointer = pointers[i];
+            if (pointer.length() > 0 && pointer.charAt(0) != '/') {
+                throw new JSONException("A JSON Pointer must begin with '/': "
+                        + pointer);
+            }
+            Node node = this.root;
+            int at = 0;
+            while (at < pointer.length()) {
+                int end = pointer.indexOf('/', at + 1);
+                if (end < 0) {
+                    end = pointer.length();
+                }
+                String name = pointer.substring(at + 1, end)
+                        .replace("~1", "/").replace("~0", "~");
+                Node child = node.child(name);
+                if (child == null) {
+                    child = new Node();
+                    child.name = name;
+                    child.index = arrayIndex(name);
+                    Node[] children = new Node[node.children.length + 1];
+                    System.arraycopy(node.children, 0, children, 0,
+                            node.children.length);
+                    children[node.children.length] = child;
+                    node.children = children;
+                }
+                node = child;
+                at = end;
+            }
+            if (node.slot >= 0) {
+                throw new JSONException("Duplicate JSON Pointer: " + pointer);
+            }
+            node.slot = i;
+            node.reader = readers == null ? null : readers[i];
+        }
+    }
+
+
+    /**
+     * Get the array index that a step names.
+     * @return The index, or -1 if the name is not an array index.
+     */
+    private static int arrayIndex(String name) {
+        int length = name.length();
+        if (length == 0 || length > 9
+                || (name.charAt(0) == '0' && length > 1)) {
+            return -1;
+        }
+        int n = 0;
+        for (int i = 0; i < length; i += 1) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            n = n * 10 + (c - '0');
+        }
+        return n;
+    }
+
+
+    /**
+     * Extract the values from a JSON text.
+     *
+     * @param source
+     *            A JSON text.
+     * @return An array holding the value named by each pointer, in the order
+     *         the pointers were given, or null for a pointer that names
+     *         nothing in the text.
+     * @throws JSONException
+     *             If there is a syntax error in the part of the text that
+     *             is read.
+     */
+    public Object[] extract(String source) throws JSONException {
+        return this.extract(JSONTokener.local(source));
+    }
+
+
+    /**
+     * Extract the values from the next value of a JSONTokener.
+     *
+     * @param x
+     *            A JSONTokener.
+     * @return An array holding the value named by each pointer, in the order
+     *         the pointers were given, or null for a pointer that names
+     *         nothing in the text.
+     * @throws JSONException
+     *             If there is a syntax error in the part of the text that
+     *             is read.
+     */
+    public Object[] extract(JSONTokener x) throws JSONException {
+        Object[] values = new Object[this.count];
+        if (this.count > 0) {
+            this.walk(x, this.root, values, this.count);
+        }
+        return values;
+    }
+
+
+    /**
+     * Extract the values from the next value of a JSONTokener, reading all
+     * of that value even after every pointer has been found. This leaves
+     * the tokener just after the value, so it can be used to extract from
+     * each element of an array in turn.
+     *
+     * @param x
+     *            A JSONTokener.
+     * @return An array holding the value named by each pointer, in the order
+     *         the pointers were given, or null for a pointer that names
+     *         nothing in the value.
+     * @throws JSONException
+     *             If there is a syntax error.
+     */
+    public Object[] extractValue(JSONTokener x) throws JSONException {
+        Object[] values = new Object[this.count];
+
+// One more than the count never reaches 0, so the whole value is read.
+
+        this.walk(x, this.root, values, this.count + 1);
+        return values;
+    }
+
+
+    /**
+     * Find the values below a node in a value that has been constructed.
+     * @return The number of pointers that remain to be found.
+     */
+    private int fill(Node node, Object value, Object[] values, int remaining) {
+        if (node.slot >= 0 && values[node.slot] == null) {
+            values[node.slot] = value;
+            remaining -= 1;
+        }
+        for (int i = 0; i < node.children.length; i += 1) {
+            Node child = node.children[i];
+            Object part = null;
+            if (value instanceof JSONObject) {
+                part = ((JSONObject) value).opt(child.name);
+            } else if (value instanceof JSONArray && child.index >= 0) {
+                part = ((JSONArray) value).opt(child.index);
+            }
+            if (part != null) {
+                remaining = this.fill(child, part, values, remaining);
+            }
+        }
+        return remaining;
+    }
+
+
+    /**
+     * Read the next value, keeping the parts of it below a node and skipping
+     * the rest.
+     * @return The number of pointers that remain to be found.
+     */
+    private int walk(JSONTokener x, Node node, Object[] values, int remaining)
+            throws JSONException {
+        if (node.slot >= 0) {
+            return this.fill(node, node.reader == null
+                    ? x.nextValue()
+                    : node.reader.read(x), values, remaining);
+        }
+        char c = x.nextClean();
+        if (c == '{') {
+            if (x.nextClean() == '}') {
+                return remaining;
+            }
+            x.back();
+            for (;;) {
+                String key = x.nextKey();
+                if (x.nextClean() != ':') {
+                    throw x.syntaxError("Expected a ':' after a key");
+                }
+                Node child = node.child(key);
+                if (child == null) {
+                    x.skipValue();
+                } else {
+                    remaining = this.walk(x, child, values, remaining);
+                    if (remaining == 0) {
+                        return 0;
+                    }
+                }
+                switch (x.nextClean()) {
+                case ';':
+                case ',':
+                    if (x.nextClean() == '}') {
+                        return remaining;
+                    }
+                    x.back();
+                    break;
+                case '}':
+                    return remaining;
+                default:
+                    throw x.syntaxError("Expected a ',' or '}'");
+                }
+            }
+        }
+        if (c == '[') {
+            if (x.nextClean() == ']') {
+                return remaining;
+            }
+            x.back();
+            for (int index = 0;; index += 1) {
+                Node child = node.child(index);
+                if (x.nextClean() == ',') {
+                    x.back();
+                    if (child != null) {
+                        remaining = this.fill(child, JSONObject.NULL, values,
+                                remaining);
+                    }
+                } else {
+                    x.back();
+                    if (child == null) {
+                        x.skipValue();
+                    } else {
+                        remaining = this.walk(x, child, values, remaining);
+                    }
+                }
+                if (remaining == 0) {
+                    return 0;
+                }
+                switch (x.nextClean()) {
+                case ',':
+                    if (x.nextClean() == ']') {
+                        return remaining;
+                    }
+                    x.back();
+                    break;
+                case ']':
+                    return remaining;
+                default:
+                    throw x.syntaxError("Expected a ',' or ']'");
+                }
+            }
+        }
+        x.back();
+        x.skipValue();
+        return remaining;
+    }
+}
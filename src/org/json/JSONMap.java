@@ -0,0 +1,412 @@
+package org.json;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * JSONMap is the map behind a JSONObject. Keys and values are kept in two
+ * flat arrays in the order they were added. Small maps are searched by
+ * scanning the keys; once a map has more than SCAN_LIMIT keys, it also
+ * keeps an open-addressed index into the arrays.
+ * <p>
+ * Maps made by the same JSONTokener that have the same keys in the same
+ * order can share one array of keys (and one index). A map that shares
+ * its keys copies them before it adds or removes a key.
+ * <p>
+ * Keys may not be null.
+ * @author JSON.org
+ * @version 2014-09-25
+ */
+class JSONMap extends AbstractMap {
+
+    /**
+     * The most keys in a map that has no index.
+     */
+    static final int SCAN_LIMIT = 8;
+
+    /**
+     * The index, or null if there are at most SCAN_LIMIT keys. Each slot
+     * holds one more than the position of a key, or 0 if it is empty.
+     */
+    private int[] index;
+
+    /**
+     * The keys, in the order they were added.
+     */
+    private Object[] keys;
+
+    /**
+     * The number of times keys were added or removed, for iterators.
+     */
+    private int modCount;
+
+    /**
+     * True if the keys and index may be in use by other maps.
+     */
+    private boolean shared;
+
+    /**
+     * The number of keys.
+     */
+    private int size;
+
+    /**
+     * The values, in the same order as the keys.
+     */
+    private Object[] values;
+
+
+    /**
+     * Construct an empty JSONMap.
+     */
+    JSONMap() {
+        this(4);
+    }
+
+
+    /**
+     * Construct an empty JSONMap with room for some keys.
+     * @param capacity The number of keys to make room for.
+     */
+    JSONMap(int capacity) {
+        capacity = Math.max(capacity, 1);
+        this.keys = new Object[capacity];
+        this.values = new Object[capacity];
+    }
+
+
+    /**
+     * Find the slot for a key in an index. The slot holds either the key's
+     * position or 0.
+     */
+    private static int slot(int[] index, Object[] keys, Object key) {
+        int mask = index.length - 1;
+        int hash = key.hashCode();
+        int i = (hash ^ (hash >>> 16)) & mask;
+        for (;;) {
+            int at = index[i];
+            if (at == 0) {
+                return i;
+            }
+            Object k = keys[at - 1];
+            if (k == key || k.equals(key)) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+
+    /**
+     * Build an index for the keys, or drop the index if it is not needed.
+     */
+    private void reindex() {
+        if (this.size <= SCAN_LIMIT) {
+            this.index = null;
+            return;
+        }
+        int length = Integer.highestOneBit(this.size * 3) << 1;
+        int[] index = new int[length];
+        for (int i = 0; i < this.size; i += 1) {
+            index[slot(index, this.keys, this.keys[i])] = i + 1;
+        }
+        this.index = index;
+    }
+
+
+    /**
+     * Find the position of a key.
+     * @return The position, or -1 if the key is not in the map.
+     */
+    private int find(Object key) {
+        if (key == null) {
+            return -1;
+        }
+        Object[] keys = this.keys;
+        if (this.index != null) {
+            return this.index[slot(this.index, keys, key)] - 1;
+        }
+        int size = this.size;
+        for (int i = 0; i < size; i += 1) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        int hash = key.hashCode();
+        for (int i = 0; i < size; i += 1) {
+            Object k = keys[i];
+            if (k.hashCode() == hash && k.equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Make sure that this map has its own keys, with room for one more.
+     */
+    private void unshare() {
+        int capacity = this.keys.length;
+        if (this.size == capacity) {
+            capacity = capacity + (capacity >> 1) + 1;
+        }
+        if (this.shared || capacity != this.keys.length) {
+            Object[] keys = new Object[capacity];
+            System.arraycopy(this.keys, 0, keys, 0, this.size);
+            this.keys = keys;
+            if (this.index != null) {
+                this.index = (int[]) this.index.clone();
+            }
+            this.shared = false;
+        }
+        if (capacity != this.values.length) {
+            Object[] values = new Object[capacity];
+            System.arraycopy(this.values, 0, values, 0, this.size);
+            this.values = values;
+        }
+    }
+
+
+    /**
+     * Use the same keys as an earlier map, if it has exactly the keys of
+     * this one in the same order, or else let later maps use this map's
+     * keys. The values array is trimmed to fit.
+     * @param shape An earlier map, or null.
+     * @return true if this map now uses the keys of shape.
+     */
+    boolean share(JSONMap shape) {
+        int size = this.size;
+        if (this.values.length != size) {
+            Object[] values = new Object[size];
+            System.arraycopy(this.values, 0, values, 0, size);
+            this.values = values;
+        }
+        this.shared = true;
+        if (shape != null && shape != this && shape.size == size) {
+            int i = 0;
+            while (i < size && shape.keys[i] == this.keys[i]) {
+                i += 1;
+            }
+            if (i == size) {
+                shape.shared = true;
+                this.keys = shape.keys;
+                this.index = shape.index;
+                return true;
+            }
+        }
+        if (this.keys.length != size) {
+            Object[] keys = new Object[size];
+            System.arraycopy(this.keys, 0, keys, 0, size);
+            this.keys = keys;
+        }
+        return false;
+    }
+
+
+    /**
+     * Get a hash of the keys of this map, for finding maps with the same
+     * keys.
+     */
+    int shapeHash() {
+        int hash = this.size;
+        if (this.size > 0) {
+            hash = hash * 31 + this.keys[0].hashCode();
+            hash = hash * 31 + this.keys[this.size - 1].hashCode();
+        }
+        return hash;
+    }
+
+
+    /**
+     * Remove the key and value at a position.
+     */
+    private Object removeAt(int i) {
+        Object value = this.values[i];
+        if (this.shared) {
+            Object[] keys = new Object[this.keys.length];
+            System.arraycopy(this.keys, 0, keys, 0, this.size);
+            this.keys = keys;
+            this.shared = false;
+        }
+        int moved = this.size - i - 1;
+        System.arraycopy(this.keys, i + 1, this.keys, i, moved);
+        System.arraycopy(this.values, i + 1, this.values, i, moved);
+        this.size -= 1;
+        this.keys[this.size] = null;
+        this.values[this.size] = null;
+        this.modCount += 1;
+        this.reindex();
+        return value;
+    }
+
+
+    public void clear() {
+        this.index = null;
+        this.keys = new Object[4];
+        this.values = new Object[4];
+        this.shared = false;
+        this.size = 0;
+        this.modCount += 1;
+    }
+
+
+    public boolean containsKey(Object key) {
+        return this.find(key) >= 0;
+    }
+
+
+    public Set entrySet() {
+        return new AbstractSet() {
+            public Iterator iterator() {
+                return new Iter(true);
+            }
+
+            public int size() {
+                return JSONMap.this.size;
+            }
+        };
+    }
+
+
+    public Object get(Object key) {
+        int i = this.find(key);
+        return i < 0 ? null : this.values[i];
+    }
+
+
+    public Set keySet() {
+        return new AbstractSet() {
+            public boolean contains(Object key) {
+                return JSONMap.this.containsKey(key);
+            }
+
+            public Iterator iterator() {
+                return new Iter(false);
+            }
+
+            public int size() {
+                return JSONMap.this.size;
+            }
+        };
+    }
+
+
+    public Object put(Object key, Object value) {
+        if (key == null) {
+            throw new NullPointerException("Null key.");
+        }
+        int i = this.find(key);
+        if (i >= 0) {
+            Object old = this.values[i];
+            this.values[i] = value;
+            return old;
+        }
+        this.unshare();
+        i = this.size;
+        this.keys[i] = key;
+        this.values[i] = value;
+        this.size += 1;
+        this.modCount += 1;
+        if (this.index == null || this.size * 3 > this.index.length * 2) {
+            this.reindex();
+        } else {
+            this.index[slot(this.index, this.keys, key)] = i + 1;
+        }
+        return null;
+    }
+
+
+    public Object remove(Object key) {
+        int i = this.find(key);
+        return i < 0 ? null : this.removeAt(i);
+    }
+
+
+    public int size() {
+        return this.size;
+    }
+
+
+    /**
+     * An iterator over the keys or entries of the map, in order.
+     */
+    private class Iter implements Iterator {
+        private final boolean entries;
+        private int expected = JSONMap.this.modCount;
+        private int last = -1;
+        private int next = 0;
+
+        Iter(boolean entries) {
+            this.entries = entries;
+        }
+
+        public boolean hasNext() {
+            return this.next < JSONMap.this.size;
+        }
+
+        public Object next() {
+            if (this.expected != JSONMap.this.modCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (this.next >= JSONMap.this.size) {
+                throw new NoSuchElementException();
+            }
+            final int i = this.next;
+            this.last = i;
+            this.next += 1;
+            if (!this.entries) {
+                return JSONMap.this.keys[i];
+            }
+            return new AbstractMap.SimpleEntry(JSONMap.this.keys[i],
+                    JSONMap.this.values[i]) {
+                public Object setValue(Object value) {
+                    JSONMap.this.values[i] = value;
+                    return super.setValue(value);
+                }
+            };
+        }
+
+        public void remove() {
+            if (this.last < 0) {
+                throw new IllegalStateException();
+            }
+            if (this.expected != JSONMap.this.modCount) {
+                throw new ConcurrentModificationException();
+            }
+            JSONMap.this.removeAt(this.last);
+            this.next = this.last;
+            this.last = -1;
+            this.expected = JSONMap.this.modCount;
+        }
+    }
+}
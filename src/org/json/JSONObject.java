@@ -27,17 +27,21 @@ package org.json;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A JSONObject is an unordered collection of name/value pairs. Its external
@@ -132,6 +136,49 @@ public class JSONObject {
         }
     }
 
+    /**
+     * A bean getter: the key it produces, and a handle that calls it. The
+     * handle takes the bean as an Object and returns an Object.
+     */
+    private static final class Getter {
+        final String key;
+        final MethodHandle handle;
+
+        Getter(String key, MethodHandle handle) {
+            this.key = key;
+            this.handle = handle;
+        }
+    }
+
+    /**
+     * The type of the handles in getters and fields.
+     */
+    private static final MethodType accessorType = MethodType.methodType(
+            Object.class, Object.class);
+
+    /**
+     * The getters of each bean class, found the first time an object of
+     * that class is converted. After that, converting an object of the
+     * class does no reflection at all.
+     */
+    private static final ClassValue<Getter[]> getters =
+            new ClassValue<Getter[]>() {
+        protected Getter[] computeValue(Class klass) {
+            return findGetters(klass);
+        }
+    };
+
+    /**
+     * For each class, the handles that read its public fields, by name.
+     * Names that are not readable public fields map to Boolean.FALSE.
+     */
+    private static final ClassValue<ConcurrentHashMap<String, Object>> fields =
+            new ClassValue<ConcurrentHashMap<String, Object>>() {
+        protected ConcurrentHashMap<String, Object> computeValue(Class klass) {
+            return new ConcurrentHashMap<String, Object>();
+        }
+    };
+
     /**
      * The map where the JSONObject's properties are kept.
      */
@@ -149,7 +196,7 @@ public class JSONObject {
      * Construct an empty JSONObject.
      */
     public JSONObject() {
-        this.map = new HashMap();
+        this.map = new JSONMap();
     }
 
     /**
@@ -199,10 +246,11 @@ public class JSONObject {
             case 0:
                 throw x.syntaxError("A JSONObject text must end with '}'");
             case '}':
+                x.shape((JSONMap) this.map);
                 return;
             default:
                 x.back();
-                key = x.nextValue().toString();
+                key = x.nextKey();
             }
 
 // The key is followed by ':'.
@@ -219,11 +267,13 @@ public class JSONObject {
             case ';':
             case ',':
                 if (x.nextClean() == '}') {
+                    x.shape((JSONMap) this.map);
                     return;
                 }
                 x.back();
                 break;
             case '}':
+                x.shape((JSONMap) this.map);
                 return;
             default:
                 throw x.syntaxError("Expected a ',' or '}'");
@@ -240,7 +290,7 @@ public class JSONObject {
      * @throws JSONException
      */
     public JSONObject(Map map) {
-        this.map = new HashMap();
+        this.map = new JSONMap();
         if (map != null) {
             Iterator i = map.entrySet().iterator();
             while (i.hasNext()) {
@@ -296,15 +346,48 @@ public class JSONObject {
     public JSONObject(Object object, String names[]) {
         this();
         Class c = object.getClass();
+        ConcurrentHashMap<String, Object> handles = fields.get(c);
         for (int i = 0; i < names.length; i += 1) {
             String name = names[i];
-            try {
-                this.putOpt(name, c.getField(name).get(object));
-            } catch (Exception ignore) {
+            Object handle = handles.get(name);
+            if (handle == null) {
+                handle = findField(c, name);
+                handles.put(name, handle);
+            }
+            if (handle instanceof MethodHandle) {
+                try {
+                    this.putOpt(name,
+                            (Object) ((MethodHandle) handle).invokeExact(object));
+                } catch (Throwable ignore) {
+                }
             }
         }
     }
 
+    /**
+     * Find a handle that reads a public field.
+     *
+     * @param klass
+     *            The class of the object.
+     * @param name
+     *            The name of the field.
+     * @return A MethodHandle, or Boolean.FALSE if the field is not a readable
+     *         public field.
+     */
+    private static Object findField(Class klass, String name) {
+        try {
+            Field field = klass.getField(name);
+            MethodHandle handle = MethodHandles.publicLookup()
+                    .unreflectGetter(field);
+            if (Modifier.isStatic(field.getModifiers())) {
+                handle = MethodHandles.dropArguments(handle, 0, Object.class);
+            }
+            return handle.asType(accessorType);
+        } catch (Exception e) {
+            return Boolean.FALSE;
+        }
+    }
+
     /**
      * Construct a JSONObject from a source JSON text string. This is the most
      * commonly used JSONObject constructor.
@@ -318,7 +401,7 @@ public class JSONObject {
      *                duplicated key.
      */
     public JSONObject(String source) throws JSONException {
-        this(new JSONTokener(source));
+        this(JSONTokener.local(source));
     }
 
     /**
@@ -978,7 +1061,29 @@ public class JSONObject {
     }
 
     private void populateMap(Object bean) {
-        Class klass = bean.getClass();
+        Getter[] beanGetters = getters.get(bean.getClass());
+        for (int i = 0; i < beanGetters.length; i += 1) {
+            try {
+                Object result = (Object) beanGetters[i].handle
+                        .invokeExact(bean);
+                if (result != null) {
+                    this.map.put(beanGetters[i].key, wrap(result));
+                }
+            } catch (Throwable ignore) {
+            }
+        }
+    }
+
+    /**
+     * Find the getters of a bean class. A getter is a public method with no
+     * parameters whose name is "get" or "is" followed by an uppercase letter.
+     *
+     * @param klass
+     *            The class of the bean.
+     * @return The getters, with handles that the public lookup can use.
+     */
+    private static Getter[] findGetters(Class klass) {
+        ArrayList found = new ArrayList();
 
 // If klass is a System class then set includeSuperClass to false.
 
@@ -1012,15 +1117,19 @@ public class JSONObject {
                                     + key.substring(1);
                         }
 
-                        Object result = method.invoke(bean, (Object[]) null);
-                        if (result != null) {
-                            this.map.put(key, wrap(result));
+                        MethodHandle handle = MethodHandles.publicLookup()
+                                .unreflect(method);
+                        if (Modifier.isStatic(method.getModifiers())) {
+                            handle = MethodHandles.dropArguments(handle, 0,
+                                    Object.class);
                         }
+                        found.add(new Getter(key, handle.asType(accessorType)));
                     }
                 }
             } catch (Exception ignore) {
             }
         }
+        return (Getter[]) found.toArray(new Getter[found.size()]);
     }
 
     /**
@@ -1199,6 +1308,9 @@ public class JSONObject {
      * @return A String correctly formatted for insertion in a JSON text.
      */
     public static String quote(String string) {
+        if (string != null && !needsEscape(string)) {
+            return '"' + string + '"';
+        }
         StringWriter sw = new StringWriter();
         synchronized (sw.getBuffer()) {
             try {
@@ -1210,6 +1322,27 @@ public class JSONObject {
         }
     }
 
+    /**
+     * Determine whether quote would change any of the characters in a
+     * string.
+     *
+     * @param string
+     *            A String
+     * @return true if some character must be escaped.
+     */
+    static boolean needsEscape(String string) {
+        int len = string.length();
+        for (int i = 0; i < len; i += 1) {
+            char c = string.charAt(i);
+            if (c < ' ' || c == '\\' || c == '"' || c == '/'
+                    || (c >= '\u0080' && c < '\u00a0')
+                    || (c >= '\u2000' && c < '\u2100')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public static Writer quote(String string, Writer w) throws IOException {
         if (string == null || string.length() == 0) {
             w.write("\"\"");
@@ -1601,7 +1734,7 @@ public class JSONObject {
 
             if (length == 1) {
                 Object key = keys.next();
-                writer.write(quote(key.toString()));
+                quote(key.toString(), writer);
                 writer.write(':');
                 if (indentFactor > 0) {
                     writer.write(' ');
@@ -1618,7 +1751,7 @@ public class JSONObject {
                         writer.write('\n');
                     }
                     indent(writer, newindent);
-                    writer.write(quote(key.toString()));
+                    quote(key.toString(), writer);
                     writer.write(':');
                     if (indentFactor > 0) {
                         writer.write(' ');
@@ -5,7 +5,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
-import java.io.StringReader;
 
 /*
 Copyright (c) 2002 JSON.org
@@ -40,13 +39,37 @@ SOFTWARE.
  */
 public class JSONTokener {
 
-    private long    character;
-    private boolean eof;
-    private long    index;
-    private long    line;
-    private char    previous;
-    private Reader  reader;
-    private boolean usePrevious;
+    /**
+     * The most keys that a tokener will remember. Keys beyond this are
+     * returned as fresh strings.
+     */
+    static final int KEY_LIMIT = 1024;
+
+    /**
+     * The longest string that local will parse with a shared tokener.
+     */
+    static final int LOCAL_LIMIT = 8192;
+
+    /**
+     * Each thread's shared tokener for short strings.
+     */
+    private static final ThreadLocal<JSONTokener> locals =
+            new ThreadLocal<JSONTokener>();
+
+    private long     character;
+    private boolean  eof;
+    private long     index;
+    private char[]   keyChars;
+    private int      keyCount;
+    private String[] keys;
+    private JSONMap[] shapes;
+    private long     line;
+    private char     previous;
+    private Reader   reader;
+    private StringBuilder scratch;
+    private String   source;
+    private int      sourceIndex;
+    private boolean  usePrevious;
 
 
     /**
@@ -55,15 +78,11 @@ public class JSONTokener {
      * @param reader     A reader.
      */
     public JSONTokener(Reader reader) {
-        this.reader = reader.markSupported()
-            ? reader
-            : new BufferedReader(reader);
-        this.eof = false;
-        this.usePrevious = false;
-        this.previous = 0;
-        this.index = 0;
-        this.character = 1;
-        this.line = 1;
+        this.keyChars = new char[32];
+        this.keys = new String[64];
+        this.scratch = new StringBuilder();
+        this.shapes = new JSONMap[64];
+        this.reset(reader);
     }
 
 
@@ -81,7 +100,86 @@ public class JSONTokener {
      * @param s     A source string.
      */
     public JSONTokener(String s) {
-        this(new StringReader(s));
+        this.keyChars = new char[32];
+        this.keys = new String[64];
+        this.scratch = new StringBuilder();
+        this.shapes = new JSONMap[64];
+        this.reset(s);
+    }
+
+
+    /**
+     * Get this thread's shared JSONTokener, reset to read a string. Long
+     * strings get a new JSONTokener instead, so that a shared tokener
+     * never holds on to a large text. The tokener must be finished with
+     * before local is called again on the same thread.
+     *
+     * @param s     A source string.
+     * @return A JSONTokener reading s.
+     */
+    static JSONTokener local(String s) {
+        if (s.length() > LOCAL_LIMIT) {
+            return new JSONTokener(s);
+        }
+        JSONTokener x = locals.get();
+        if (x == null) {
+            x = new JSONTokener(s);
+            locals.set(x);
+            return x;
+        }
+        return x.reset(s);
+    }
+
+
+    /**
+     * Start over, reading from a Reader. The keys this tokener has seen
+     * and its buffers are kept, so reusing a tokener for many small texts
+     * saves allocating them again.
+     *
+     * @param reader     A reader.
+     * @return this.
+     */
+    public JSONTokener reset(Reader reader) {
+        this.start();
+        this.reader = reader.markSupported()
+            ? reader
+            : new BufferedReader(reader);
+        this.source = null;
+        return this;
+    }
+
+
+    /**
+     * Start over, reading from a string. The keys this tokener has seen
+     * and its buffers are kept, so reusing a tokener for many small texts
+     * saves allocating them again.
+     *
+     * @param s     A source string.
+     * @return this.
+     */
+    public JSONTokener reset(String s) {
+        this.start();
+        this.reader = null;
+        this.source = s;
+        this.sourceIndex = 0;
+        return this;
+    }
+
+
+    /**
+     * Set the position to the beginning, and forget the shapes of the
+     * objects from the last text, since they hold on to its values.
+     */
+    private void start() {
+        this.eof = false;
+        this.usePrevious = false;
+        this.previous = 0;
+        this.index = 0;
+        this.character = 1;
+        this.line = 1;
+        for (int i = 0; i < this.shapes.length; i += 1) {
+            this.shapes[i] = null;
+        }
     }
 
 
@@ -151,10 +249,17 @@ public class JSONTokener {
             this.usePrevious = false;
             c = this.previous;
         } else {
-            try {
-                c = this.reader.read();
-            } catch (IOException exception) {
-                throw new JSONException(exception);
+            if (this.source != null) {
+                c = this.sourceIndex < this.source.length()
+                    ? this.source.charAt(this.sourceIndex)
+                    : -1;
+                this.sourceIndex += 1;
+            } else {
+                try {
+                    c = this.reader.read();
+                } catch (IOException exception) {
+                    throw new JSONException(exception);
+                }
             }
 
             if (c <= 0) { // End of stream
@@ -250,8 +355,20 @@ public class JSONTokener {
      */
     public String nextString(char quote) throws JSONException {
         char c;
-        StringBuffer sb = new StringBuffer();
+        StringBuilder sb = this.scratch;
+        sb.setLength(0);
         for (;;) {
+            if (this.source != null && !this.usePrevious) {
+                int start = this.sourceIndex;
+                int end = this.plain(quote);
+                if (sb.length() == 0 && end < this.source.length()
+                        && this.source.charAt(end) == quote) {
+                    this.advance(end + 1);
+                    return this.source.substring(start, end);
+                }
+                sb.append(this.source, start, end);
+                this.advance(end);
+            }
             c = this.next();
             switch (c) {
             case 0:
@@ -299,6 +416,150 @@ public class JSONTokener {
     }
 
 
+    /**
+     * Get the next key of an object. A quoted key is looked up in this
+     * tokener's table of keys, so that objects with the same keys share
+     * the same key strings (and their cached hash codes) rather than
+     * allocating new ones. Unquoted keys are read as by nextValue.
+     * @return A key.
+     * @throws JSONException If syntax error.
+     */
+    public String nextKey() throws JSONException {
+        char c = this.nextClean();
+        if (c != '"' && c != '\'') {
+            this.back();
+            return this.nextValue().toString();
+        }
+        char quote = c;
+        char[] chars = this.keyChars;
+        int hash = 0;
+        int length = 0;
+        for (;;) {
+            c = this.next();
+            switch (c) {
+            case 0:
+            case '\n':
+            case '\r':
+                throw this.syntaxError("Unterminated string");
+            case '\\':
+                c = this.next();
+                switch (c) {
+                case 'b':
+                    c = '\b';
+                    break;
+                case 't':
+                    c = '\t';
+                    break;
+                case 'n':
+                    c = '\n';
+                    break;
+                case 'f':
+                    c = '\f';
+                    break;
+                case 'r':
+                    c = '\r';
+                    break;
+                case 'u':
+                    c = (char)Integer.parseInt(this.next(4), 16);
+                    break;
+                case '"':
+                case '\'':
+                case '\\':
+                case '/':
+                    break;
+                default:
+                    throw this.syntaxError("Illegal escape.");
+                }
+                break;
+            default:
+                if (c == quote) {
+                    return this.intern(chars, length, hash);
+                }
+            }
+            if (length == chars.length) {
+                char[] bigger = new char[length * 2];
+                System.arraycopy(chars, 0, bigger, 0, length);
+                this.keyChars = chars = bigger;
+            }
+            chars[length] = c;
+            length += 1;
+            hash = 31 * hash + c;
+        }
+    }
+
+
+    /**
+     * Find the key made of the first length chars, adding it to the table
+     * of keys if it is new and there is room.
+     * @param chars The characters of the key.
+     * @param length The length of the key.
+     * @param hash The hash code of the key, as String.hashCode computes it.
+     * @return The key.
+     */
+    private String intern(char[] chars, int length, int hash) {
+        String[] keys = this.keys;
+        int mask = keys.length - 1;
+        int i = (hash ^ (hash >>> 16)) & mask;
+        String key;
+        while ((key = keys[i]) != null) {
+            if (key.hashCode() == hash && key.length() == length) {
+                int j = 0;
+                while (j < length && key.charAt(j) == chars[j]) {
+                    j += 1;
+                }
+                if (j == length) {
+                    return key;
+                }
+            }
+            i = (i + 1) & mask;
+        }
+        key = new String(chars, 0, length);
+        if (this.keyCount < KEY_LIMIT) {
+            keys[i] = key;
+            this.keyCount += 1;
+            if (this.keyCount * 2 > keys.length) {
+                this.rehashKeys();
+            }
+        }
+        return key;
+    }
+
+
+    /**
+     * Double the size of the table of keys.
+     */
+    private void rehashKeys() {
+        String[] old = this.keys;
+        String[] keys = new String[old.length * 2];
+        int mask = keys.length - 1;
+        for (int j = 0; j < old.length; j += 1) {
+            String key = old[j];
+            if (key != null) {
+                int hash = key.hashCode();
+                int i = (hash ^ (hash >>> 16)) & mask;
+                while (keys[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+            }
+        }
+        this.keys = keys;
+    }
+
+
+    /**
+     * Let the map of a newly parsed object share its keys with an earlier
+     * object that has the same keys, or remember it for later objects.
+     * @param map The map of an object that has just been parsed.
+     */
+    void shape(JSONMap map) {
+        int i = map.shapeHash() & (this.shapes.length - 1);
+        if (!map.share(this.shapes[i])) {
+            this.shapes[i] = map;
+        }
+    }
+
+
     /**
      * Get the text up but not including the specified character or the
      * end of line, whichever comes first.
@@ -375,13 +636,18 @@ public class JSONTokener {
          * formatting character.
          */
 
-        StringBuffer sb = new StringBuffer();
+        StringBuilder sb = this.scratch;
+        sb.setLength(0);
         while (c >= ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0) {
             sb.append(c);
             c = this.next();
         }
         this.back();
 
+        Object value = literal(sb);
+        if (value != null) {
+            return value;
+        }
         string = sb.toString().trim();
         if ("".equals(string)) {
             throw this.syntaxError("Missing value");
@@ -390,6 +656,200 @@ public class JSONTokener {
     }
 
 
+    /**
+     * Convert the common unquoted values (true, false, null, and ints
+     * written without leading zeros) without making a string first.
+     * @param sb The unquoted text.
+     * @return The value, or null if the text is something else.
+     */
+    private static Object literal(StringBuilder sb) {
+        int length = sb.length();
+        if (length == 0 || length > 10) {
+            return null;
+        }
+        char c = sb.charAt(0);
+        if (c == 't' && length == 4 && sb.charAt(1) == 'r'
+                && sb.charAt(2) == 'u' && sb.charAt(3) == 'e') {
+            return Boolean.TRUE;
+        }
+        if (c == 'f' && length == 5 && sb.charAt(1) == 'a'
+                && sb.charAt(2) == 'l' && sb.charAt(3) == 's'
+                && sb.charAt(4) == 'e') {
+            return Boolean.FALSE;
+        }
+        if (c == 'n' && length == 4 && sb.charAt(1) == 'u'
+                && sb.charAt(2) == 'l' && sb.charAt(3) == 'l') {
+            return JSONObject.NULL;
+        }
+        int i = c == '-' ? 1 : 0;
+        if (i == length || length - i > 9 || sb.charAt(i) < '0'
+                || sb.charAt(i) > '9'
+                || (sb.charAt(i) == '0' && (i == 1 || length > 1))) {
+            return null;
+        }
+        int n = 0;
+        for (; i < length; i += 1) {
+            c = sb.charAt(i);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+            n = n * 10 + (c - '0');
+        }
+        return Integer.valueOf(sb.charAt(0) == '-' ? -n : n);
+    }
+
+
+    /**
+     * Move to a later position in the source string, counting the
+     * characters passed over just as next would.
+     * @param end The position in the source string to move to.
+     */
+    private void advance(int end) {
+        String source = this.source;
+        char previous = this.previous;
+        long character = this.character;
+        long line = this.line;
+        for (int i = this.sourceIndex; i < end; i += 1) {
+            char c = source.charAt(i);
+            if (previous == '\r') {
+                line += 1;
+                character = c == '\n' ? 0 : 1;
+            } else if (c == '\n') {
+                line += 1;
+                character = 0;
+            } else {
+                character += 1;
+            }
+            previous = c;
+        }
+        this.index += end - this.sourceIndex;
+        this.character = character;
+        this.line = line;
+        this.previous = previous;
+        this.sourceIndex = end;
+    }
+
+
+    /**
+     * Find the end of the run of ordinary string characters that starts at
+     * the current position in the source string.
+     * @param quote The quoting character.
+     * @return The position of the first quote, backslash, line break, or
+     *  NUL at or after the current position, or the length of the source.
+     */
+    private int plain(char quote) {
+        String source = this.source;
+        int length = source.length();
+        int i = this.sourceIndex;
+        while (i < length) {
+            char c = source.charAt(i);
+            if (c == quote || c == '\\' || c == '\n' || c == '\r'
+                    || c == 0) {
+                return i;
+            }
+            i += 1;
+        }
+        return i;
+    }
+
+
+    /**
+     * Skip the characters of a string, up to and including the close quote.
+     * @param quote The quoting character.
+     * @throws JSONException Unterminated string.
+     */
+    private void skipString(char quote) throws JSONException {
+        for (;;) {
+            if (this.source != null && !this.usePrevious) {
+                this.advance(this.plain(quote));
+            }
+            char c = this.next();
+            switch (c) {
+            case 0:
+            case '\n':
+            case '\r':
+                throw this.syntaxError("Unterminated string");
+            case '\\':
+                this.next();
+                break;
+            default:
+                if (c == quote) {
+                    return;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Skip the next value without constructing it. Strings are skipped
+     * along with their escapes, and objects and arrays are skipped by
+     * counting the brackets that are not inside strings, so the contents
+     * of a skipped object or array are not checked for syntax errors.
+     * @throws JSONException If the text ends before the value does, or if
+     *  there is no value.
+     */
+    public void skipValue() throws JSONException {
+        int depth = 0;
+        char c = this.nextClean();
+        for (;;) {
+            switch (c) {
+            case 0:
+                throw this.syntaxError(depth == 0
+                    ? "Missing value"
+                    : "Unterminated object or array");
+            case '"':
+            case '\'':
+                this.skipString(c);
+                if (depth == 0) {
+                    return;
+                }
+                break;
+            case '{':
+            case '[':
+                depth += 1;
+                break;
+            case '}':
+            case ']':
+                if (depth == 0) {
+                    throw this.syntaxError("Missing value");
+                }
+                depth -= 1;
+                if (depth == 0) {
+                    return;
+                }
+                break;
+            default:
+                if (depth == 0) {
+                    if (",:/\\;=#".indexOf(c) >= 0) {
+                        throw this.syntaxError("Missing value");
+                    }
+                    while (c >= ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0) {
+                        c = this.next();
+                    }
+                    this.back();
+                    return;
+                }
+            }
+            if (this.source != null && !this.usePrevious) {
+                String source = this.source;
+                int length = source.length();
+                int i = this.sourceIndex;
+                while (i < length) {
+                    c = source.charAt(i);
+                    if (c == '"' || c == '\'' || c == '{' || c == '['
+                            || c == '}' || c == ']' || c == 0) {
+                        break;
+                    }
+                    i += 1;
+                }
+                this.advance(i);
+            }
+            c = this.next();
+        }
+    }
+
+
     /**
      * Skip characters until the next character is the requested character.
      * If the requested character is not found, no characters are skipped.
@@ -403,11 +863,17 @@ public class JSONTokener {
             long startIndex = this.index;
             long startCharacter = this.character;
             long startLine = this.line;
-            this.reader.mark(1000000);
+            int startSourceIndex = this.sourceIndex;
+            if (this.source == null) {
+                this.reader.mark(1000000);
+            }
             do {
                 c = this.next();
                 if (c == 0) {
-                    this.reader.reset();
+                    if (this.source == null) {
+                        this.reader.reset();
+                    }
+                    this.sourceIndex = startSourceIndex;
                     this.index = startIndex;
                     this.character = startCharacter;
                     this.line = startLine;
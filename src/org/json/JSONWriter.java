@@ -1,7 +1,11 @@
 package org.json;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 
 /*
 Copyright (c) 2006 JSON.org
@@ -53,8 +57,15 @@ SOFTWARE.
  * you. Objects and arrays can be nested up to 20 levels deep.
  * <p>
  * This can sometimes be easier than using a JSONObject to build a string.
+ * <p>
+ * JSONWriter does not build any intermediate objects. Strings and numbers
+ * are written straight to the writer, and the keys of each open object are
+ * kept in one shared table so that duplicates can be detected. That check
+ * can be turned off when the caller knows its keys are distinct. When
+ * writing to an OutputStream, the text is UTF-8 encoded through a buffer
+ * that is flushed when the outermost array or object ends.
  * @author JSON.org
- * @version 2011-11-24
+ * @version 2014-09-25
  */
 public class JSONWriter {
     private static final int maxdepth = 200;
@@ -76,15 +87,45 @@ public class JSONWriter {
     protected char mode;
 
     /**
-     * The object/array stack.
+     * The scope stack. Each entry is 'a' (array) or 'k' (object).
      */
-    private final JSONObject stack[];
+    private final char stack[];
 
     /**
      * The stack top index. A value of 0 indicates that the stack is empty.
      */
     private int top;
 
+    /**
+     * The keys of all of the open objects, innermost last.
+     */
+    private String keys[];
+
+    /**
+     * The number of keys in use.
+     */
+    private int keyCount;
+
+    /**
+     * For each scope on the stack, the index in keys of its first key.
+     */
+    private final int keyStart[];
+
+    /**
+     * If true, duplicate keys within an object are rejected.
+     */
+    private final boolean checkKeys;
+
+    /**
+     * If true, the writer is flushed when the outermost value is done.
+     */
+    private final boolean flushWhenDone;
+
+    /**
+     * Scratch space for formatting integers.
+     */
+    private final char digits[] = new char[20];
+
     /**
      * The writer that will receive the output.
      */
@@ -94,10 +135,48 @@ public class JSONWriter {
      * Make a fresh JSONWriter. It can be used to build one JSON text.
      */
     public JSONWriter(Writer w) {
+        this(w, true, false);
+    }
+
+    /**
+     * Make a fresh JSONWriter. It can be used to build one JSON text.
+     * @param w The writer that will receive the output.
+     * @param checkKeys If false, duplicate keys are not detected.
+     */
+    public JSONWriter(Writer w, boolean checkKeys) {
+        this(w, checkKeys, false);
+    }
+
+    /**
+     * Make a fresh JSONWriter that writes UTF-8 to a stream. The output is
+     * buffered, and the buffer is flushed when the outermost array or
+     * object ends.
+     * @param out The stream that will receive the output.
+     */
+    public JSONWriter(OutputStream out) {
+        this(out, true);
+    }
+
+    /**
+     * Make a fresh JSONWriter that writes UTF-8 to a stream.
+     * @param out The stream that will receive the output.
+     * @param checkKeys If false, duplicate keys are not detected.
+     */
+    public JSONWriter(OutputStream out, boolean checkKeys) {
+        this(new BufferedWriter(new OutputStreamWriter(out,
+                StandardCharsets.UTF_8)), checkKeys, true);
+    }
+
+    private JSONWriter(Writer w, boolean checkKeys, boolean flushWhenDone) {
         this.comma = false;
         this.mode = 'i';
-        this.stack = new JSONObject[maxdepth];
+        this.stack = new char[maxdepth];
         this.top = 0;
+        this.keys = new String[32];
+        this.keyCount = 0;
+        this.keyStart = new int[maxdepth];
+        this.checkKeys = checkKeys;
+        this.flushWhenDone = flushWhenDone;
         this.writer = w;
     }
 
@@ -111,22 +190,42 @@ public class JSONWriter {
         if (string == null) {
             throw new JSONException("Null pointer");
         }
-        if (this.mode == 'o' || this.mode == 'a') {
+        this.beginValue();
+        try {
+            this.writer.write(string);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this.endValue();
+    }
+
+    /**
+     * Prepare to write a value, writing a comma if one is needed.
+     * @throws JSONException If the value is out of sequence.
+     */
+    private void beginValue() throws JSONException {
+        if (this.mode != 'o' && this.mode != 'a') {
+            throw new JSONException("Value out of sequence.");
+        }
+        if (this.comma && this.mode == 'a') {
             try {
-                if (this.comma && this.mode == 'a') {
-                    this.writer.write(',');
-                }
-                this.writer.write(string);
+                this.writer.write(',');
             } catch (IOException e) {
                 throw new JSONException(e);
             }
-            if (this.mode == 'o') {
-                this.mode = 'k';
-            }
-            this.comma = true;
-            return this;
         }
-        throw new JSONException("Value out of sequence.");
+    }
+
+    /**
+     * Note that a value has been written.
+     * @return this
+     */
+    private JSONWriter endValue() {
+        if (this.mode == 'o') {
+            this.mode = 'k';
+        }
+        this.comma = true;
+        return this;
     }
 
     /**
@@ -140,7 +239,7 @@ public class JSONWriter {
      */
     public JSONWriter array() throws JSONException {
         if (this.mode == 'i' || this.mode == 'o' || this.mode == 'a') {
-            this.push(null);
+            this.push('a');
             this.append("[");
             this.comma = false;
             return this;
@@ -164,6 +263,9 @@ public class JSONWriter {
         this.pop(mode);
         try {
             this.writer.write(c);
+            if (this.mode == 'd' && this.flushWhenDone) {
+                this.writer.flush();
+            }
         } catch (IOException e) {
             throw new JSONException(e);
         }
@@ -205,11 +307,13 @@ public class JSONWriter {
         }
         if (this.mode == 'k') {
             try {
-                this.stack[this.top - 1].putOnce(string, Boolean.TRUE);
+                if (this.checkKeys) {
+                    this.addKey(string);
+                }
                 if (this.comma) {
                     this.writer.write(',');
                 }
-                this.writer.write(JSONObject.quote(string));
+                JSONObject.quote(string, this.writer);
                 this.writer.write(':');
                 this.comma = false;
                 this.mode = 'o';
@@ -221,6 +325,26 @@ public class JSONWriter {
         throw new JSONException("Misplaced key.");
     }
 
+    /**
+     * Record a key of the innermost object.
+     * @param string A key string.
+     * @throws JSONException If the object already has that key.
+     */
+    private void addKey(String string) throws JSONException {
+        for (int i = this.keyStart[this.top - 1]; i < this.keyCount; i += 1) {
+            if (string.equals(this.keys[i])) {
+                throw new JSONException("Duplicate key \"" + string + "\"");
+            }
+        }
+        if (this.keyCount == this.keys.length) {
+            String grown[] = new String[this.keys.length * 2];
+            System.arraycopy(this.keys, 0, grown, 0, this.keyCount);
+            this.keys = grown;
+        }
+        this.keys[this.keyCount] = string;
+        this.keyCount += 1;
+    }
+
 
     /**
      * Begin appending a new object. All keys and values until the balancing
@@ -237,7 +361,7 @@ public class JSONWriter {
         }
         if (this.mode == 'o' || this.mode == 'a') {
             this.append("{");
-            this.push(new JSONObject());
+            this.push('k');
             this.comma = false;
             return this;
         }
@@ -255,29 +379,32 @@ public class JSONWriter {
         if (this.top <= 0) {
             throw new JSONException("Nesting error.");
         }
-        char m = this.stack[this.top - 1] == null ? 'a' : 'k';
+        char m = this.stack[this.top - 1];
         if (m != c) {
             throw new JSONException("Nesting error.");
         }
         this.top -= 1;
+        while (this.keyCount > this.keyStart[this.top]) {
+            this.keyCount -= 1;
+            this.keys[this.keyCount] = null;
+        }
         this.mode = this.top == 0
             ? 'd'
-            : this.stack[this.top - 1] == null
-            ? 'a'
-            : 'k';
+            : this.stack[this.top - 1];
     }
 
     /**
      * Push an array or object scope.
-     * @param c The scope to open.
+     * @param c The scope to open: 'a' (array) or 'k' (object).
      * @throws JSONException If nesting is too deep.
      */
-    private void push(JSONObject jo) throws JSONException {
+    private void push(char c) throws JSONException {
         if (this.top >= maxdepth) {
             throw new JSONException("Nesting too deep.");
         }
-        this.stack[this.top] = jo;
-        this.mode = jo == null ? 'a' : 'k';
+        this.stack[this.top] = c;
+        this.keyStart[this.top] = this.keyCount;
+        this.mode = c;
         this.top += 1;
     }
 
@@ -300,7 +427,18 @@ public class JSONWriter {
      * @throws JSONException If the number is not finite.
      */
     public JSONWriter value(double d) throws JSONException {
-        return this.value(new Double(d));
+        if (Double.isInfinite(d) || Double.isNaN(d)) {
+            throw new JSONException("JSON does not allow non-finite numbers.");
+        }
+
+// Whole numbers that Double.toString would print without an exponent come
+// out the same as the long with the same value.
+
+        if (d == (long) d && Math.abs(d) < 1e7
+                && (d != 0 || 1 / d > 0)) {
+            return this.value((long) d);
+        }
+        return this.append(JSONObject.doubleToString(d));
     }
 
     /**
@@ -310,7 +448,27 @@ public class JSONWriter {
      * @throws JSONException
      */
     public JSONWriter value(long l) throws JSONException {
-        return this.append(Long.toString(l));
+        if (l == Long.MIN_VALUE) {
+            return this.append(Long.toString(l));
+        }
+        this.beginValue();
+        long n = l < 0 ? -l : l;
+        int i = this.digits.length;
+        do {
+            i -= 1;
+            this.digits[i] = (char) ('0' + n % 10);
+            n /= 10;
+        } while (n != 0);
+        if (l < 0) {
+            i -= 1;
+            this.digits[i] = '-';
+        }
+        try {
+            this.writer.write(this.digits, i, this.digits.length - i);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this.endValue();
     }
 
 
@@ -322,6 +480,35 @@ public class JSONWriter {
      * @throws JSONException If the value is out of sequence.
      */
     public JSONWriter value(Object object) throws JSONException {
+        if (object instanceof String) {
+            this.beginValue();
+            try {
+                JSONObject.quote((String) object, this.writer);
+            } catch (IOException e) {
+                throw new JSONException(e);
+            }
+            return this.endValue();
+        }
+        if (object instanceof Integer || object instanceof Long
+                || object instanceof Short || object instanceof Byte) {
+            return this.value(((Number) object).longValue());
+        }
+        if (object instanceof Double) {
+            return this.value(((Double) object).doubleValue());
+        }
+        if (object instanceof Boolean) {
+            return this.value(((Boolean) object).booleanValue());
+        }
+        if (object instanceof JSONObject) {
+            this.beginValue();
+            ((JSONObject) object).write(this.writer);
+            return this.endValue();
+        }
+        if (object instanceof JSONArray) {
+            this.beginValue();
+            ((JSONArray) object).write(this.writer);
+            return this.endValue();
+        }
         return this.append(JSONObject.valueToString(object));
     }
 }
@@ -59,7 +59,7 @@ package org.json;
  * sequence. UTF-8 is one of the world's great inventions. While Kim is more
  * efficient, it is not clear that it is worth the expense of transition.
  *
- * @version 2013-04-18
+ * @version 2014-09-25
  */
 public class Kim {
 
@@ -155,6 +155,34 @@ public class Kim {
         int stringLength = string.length();
         this.hashcode = 0;
         this.length = 0;
+        this.string = string;
+
+// Most strings are ASCII, which is copied as is. So try that first, in a
+// single pass, and only fall back to the two passes below on reaching a
+// character that is not ASCII.
+
+        if (stringLength > 0) {
+            byte[] ascii = new byte[stringLength];
+            int hashcode = 0;
+            int sum = 1;
+            int i = 0;
+            while (i < stringLength) {
+                int c = string.charAt(i);
+                if (c > 0x7F) {
+                    break;
+                }
+                ascii[i] = (byte) c;
+                sum += c;
+                hashcode += sum;
+                i += 1;
+            }
+            if (i == stringLength) {
+                this.bytes = ascii;
+                this.length = stringLength;
+                this.hashcode = hashcode + (sum << 16);
+                return;
+            }
+        }
 
 // First pass: Determine the length of the kim, allowing for the UTF-16
 // to UTF-32 conversion, and then the UTF-32 to Kim conversion.
@@ -0,0 +1,222 @@
+package org.json.zip;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/*
+ Copyright (c) 2013 JSON.org
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ The Software shall be used for Good, not Evil.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+/**
+ * This is a big endian bit reader. It reads its bits from a ByteBuffer or a
+ * byte array. Unread bits are held in a 64 bit accumulator that is refilled
+ * 32 bits at a time, so most reads are a shift and a mask. The position of
+ * the ByteBuffer is not changed.
+ *
+ * @version 2014-09-25
+ *
+ */
+public class BitBufferReader implements BitReader {
+
+    /**
+     * The number of unread bits in this.unread.
+     */
+    private int available = 0;
+
+    /**
+     * The source of the bits.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The number of bits read so far. This is used in padding.
+     */
+    private long nrBits = 0;
+
+    /**
+     * The unread bits, in the low end. Any bits above them are garbage.
+     */
+    private long unread = 0;
+
+    /**
+     * Make a BitReader from the remaining bytes of a ByteBuffer.
+     *
+     * @param buffer
+     *            A ByteBuffer.
+     */
+    public BitBufferReader(ByteBuffer buffer) {
+        this.buffer = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Make a BitReader from a byte array.
+     *
+     * @param bytes
+     *            A byte array.
+     */
+    public BitBufferReader(byte[] bytes) {
+        this(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Make a BitReader from part of a byte array.
+     *
+     * @param bytes
+     *            A byte array.
+     * @param offset
+     *            The index of the first byte to read.
+     * @param length
+     *            The number of bytes that may be read.
+     */
+    public BitBufferReader(byte[] bytes, int offset, int length) {
+        this(ByteBuffer.wrap(bytes, offset, length));
+    }
+
+    /**
+     * Read one bit.
+     *
+     * @return true if it is a 1 bit.
+     */
+    public boolean bit() throws IOException {
+        if (this.available == 0) {
+            fill(1);
+            if (this.available == 0) {
+                throw new IOException("Attempt to read past end.");
+            }
+        }
+        this.available -= 1;
+        this.nrBits += 1;
+        return ((this.unread >>> this.available) & 1) != 0;
+    }
+
+    /**
+     * Refill the accumulator so that at least width bits are available, or
+     * as many as remain if there are fewer.
+     *
+     * @param width
+     *            The number of bits needed. (1..32)
+     */
+    private void fill(int width) {
+        if (this.buffer.remaining() >= 4) {
+            this.unread = (this.unread << 32)
+                    | (this.buffer.getInt() & 0xFFFFFFFFL);
+            this.available += 32;
+            return;
+        }
+        while (this.available < width && this.buffer.hasRemaining()) {
+            this.unread = (this.unread << 8) | (this.buffer.get() & 0xFF);
+            this.available += 8;
+        }
+    }
+
+    /**
+     * Get the number of bits that have been read from this BitBufferReader.
+     * This includes pad bits that have been skipped.
+     *
+     * @return The number of bits read so far.
+     */
+    public long nrBits() {
+        return this.nrBits;
+    }
+
+    /**
+     * Check that the rest of the block has been padded with zeroes.
+     *
+     * @param factor
+     *            The size of the block to pad. This will typically be 8, 16,
+     *            32, 64, 128, 256, etc.
+     * @return true if the block was zero padded, or false if the the padding
+     *         contains any one bits.
+     * @throws IOException
+     */
+    public boolean pad(int factor) throws IOException {
+        int padding = factor - (int) (this.nrBits % factor);
+        boolean result = true;
+
+        while (padding > 0) {
+            int width = Math.min(padding, 32);
+            if (read(width) != 0) {
+                result = false;
+            }
+            padding -= width;
+        }
+        return result;
+    }
+
+    /**
+     * Look at the next bits without reading them. Past the end, the bits are
+     * zeros. Huff uses this to decode several bits at a time.
+     *
+     * @param width
+     *            The number of bits to look at. (1..32)
+     * @return the bits
+     */
+    int peek(int width) {
+        if (this.available < width) {
+            fill(width);
+        }
+        long bits = this.available >= width
+                ? this.unread >>> (this.available - width)
+                : this.unread << (width - this.available);
+        return (int) bits & (int) (-1L >>> (64 - width));
+    }
+
+    /**
+     * Get the number of bytes that have been used, counting a partly read
+     * byte as used. This is where the next message starts when messages
+     * are padded to whole bytes.
+     *
+     * @return The number of bytes used.
+     */
+    public int position() {
+        return (int) ((this.nrBits + 7) >>> 3);
+    }
+
+    /**
+     * Read some bits.
+     *
+     * @param width
+     *            The number of bits to read. (0..32)
+     * @throws IOException
+     * @return the bits
+     */
+    public int read(int width) throws IOException {
+        if (width == 0) {
+            return 0;
+        }
+        if (width < 0 || width > 32) {
+            throw new IOException("Bad read width.");
+        }
+        if (this.available < width) {
+            fill(width);
+            if (this.available < width) {
+                throw new IOException("Attempt to read past end.");
+            }
+        }
+        this.available -= width;
+        this.nrBits += width;
+        return (int) (this.unread >>> this.available)
+                & (int) (-1L >>> (64 - width));
+    }
+}
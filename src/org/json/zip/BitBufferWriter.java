@@ -0,0 +1,208 @@
+package org.json.zip;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/*
+ Copyright (c) 2013 JSON.org
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ The Software shall be used for Good, not Evil.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+/**
+ * This is a big endian bit writer. It writes its bits into a byte array that
+ * grows as needed. Bits are gathered in a 64 bit accumulator and stored 32 at
+ * a time. Call pad before taking the bytes with toByteArray or writeTo.
+ *
+ * @version 2014-09-25
+ *
+ */
+public class BitBufferWriter implements BitWriter {
+
+    /**
+     * The bytes written so far.
+     */
+    private byte[] bytes;
+
+    /**
+     * The number of bytes in this.bytes.
+     */
+    private int length = 0;
+
+    /**
+     * The number of bits written.
+     */
+    private long nrBits = 0;
+
+    /**
+     * Holder of bits not yet stored, in the low end. Any bits above them are
+     * garbage.
+     */
+    private long unwritten = 0;
+
+    /**
+     * The number of bits in this.unwritten.
+     */
+    private int used = 0;
+
+    /**
+     * Make a BitWriter that writes into memory.
+     */
+    public BitBufferWriter() {
+        this(256);
+    }
+
+    /**
+     * Make a BitWriter that writes into memory.
+     *
+     * @param capacity
+     *            The number of bytes to make room for at first.
+     */
+    public BitBufferWriter(int capacity) {
+        this.bytes = new byte[Math.max(capacity, 8)];
+    }
+
+    /**
+     * Store the whole bytes in this.unwritten.
+     */
+    private void drain() {
+        if (this.length + 8 > this.bytes.length) {
+            byte[] bigger = new byte[this.bytes.length * 2];
+            System.arraycopy(this.bytes, 0, bigger, 0, this.length);
+            this.bytes = bigger;
+        }
+        while (this.used >= 8) {
+            this.used -= 8;
+            this.bytes[this.length] = (byte) (this.unwritten >>> this.used);
+            this.length += 1;
+        }
+    }
+
+    /**
+     * Get the number of whole bytes that have been stored.
+     *
+     * @return The number of bytes.
+     */
+    public int length() {
+        this.drain();
+        return this.length;
+    }
+
+    /**
+     * Returns the number of bits that have been written to this
+     * BitBufferWriter.
+     */
+    public long nrBits() {
+        return this.nrBits;
+    }
+
+    /**
+     * Write a 1 bit.
+     */
+    public void one() {
+        write(1, 1);
+    }
+
+    /**
+     * Pad the rest of the block with zeroes.
+     *
+     * @param factor
+     *            The size of the block to pad. This will typically be 8, 16,
+     *            32, 64, 128, 256, etc.
+     */
+    public void pad(int factor) {
+        int padding = factor - (int) (this.nrBits % factor);
+        while (padding > 0) {
+            int width = Math.min(padding, 32);
+            this.write(0, width);
+            padding -= width;
+        }
+        this.drain();
+    }
+
+    /**
+     * Forget everything that has been written, so that this BitBufferWriter
+     * can be used again.
+     */
+    public void reset() {
+        this.length = 0;
+        this.nrBits = 0;
+        this.unwritten = 0;
+        this.used = 0;
+    }
+
+    /**
+     * Get a copy of the whole bytes that have been written.
+     *
+     * @return A byte array.
+     */
+    public byte[] toByteArray() {
+        this.drain();
+        byte[] result = new byte[this.length];
+        System.arraycopy(this.bytes, 0, result, 0, this.length);
+        return result;
+    }
+
+    /**
+     * Write some bits. Up to 32 bits can be written at a time.
+     *
+     * @param bits
+     *            The bits to be written.
+     * @param width
+     *            The number of bits to write. (0..32)
+     * @throws IllegalArgumentException
+     *             If the width is out of range.
+     */
+    public void write(int bits, int width) {
+        if (bits == 0 && width == 0) {
+            return;
+        }
+        if (width <= 0 || width > 32) {
+            throw new IllegalArgumentException("Bad write width.");
+        }
+        this.unwritten = (this.unwritten << width)
+                | (bits & (-1L >>> (64 - width)));
+        this.used += width;
+        this.nrBits += width;
+        if (this.used >= 32) {
+            this.drain();
+        }
+    }
+
+    /**
+     * Send the whole bytes that have been written to an OutputStream.
+     *
+     * @param out
+     *            An OutputStream.
+     * @throws IOException
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        this.drain();
+        out.write(this.bytes, 0, this.length);
+    }
+
+    /**
+     * Write a 0 bit.
+     */
+    public void zero() {
+        write(0, 1);
+    }
+}
@@ -29,8 +29,12 @@ import java.io.InputStream;
 
 /**
  * This is a big endian bit reader. It reads its bits from an InputStream.
+ * Unread bits are held in a 64 bit accumulator, so most reads are a shift and
+ * a mask. Bytes are taken from the InputStream only as they are needed, so
+ * the stream is left just after the last byte that was used. To read bits
+ * from a byte array or a ByteBuffer, BitBufferReader is faster.
  *
- * @version 2013-04-18
+ * @version 2014-09-25
  *
  */
 public class BitInputStream implements BitReader {
@@ -40,14 +44,14 @@ public class BitInputStream implements BitReader {
     static final int[] mask = { 0, 1, 3, 7, 15, 31, 63, 127, 255 };
 
     /**
-     * The number of bits remaining in the current byte.
+     * The number of unread bits in this.unread.
      */
     private int available = 0;
 
     /**
-     * Up to a byte's worth of unread bits.
+     * The unread bits, in the low end. Any bits above them are garbage.
      */
-    private int unread = 0;
+    private long unread = 0;
 
     /**
      * The source of the bits.
@@ -83,7 +87,7 @@ public class BitInputStream implements BitReader {
      */
     public BitInputStream(InputStream in, int firstByte) {
         this.in = in;
-        this.unread = firstByte;
+        this.unread = firstByte & 0xFF;
         this.available = 8;
     }
 
@@ -93,7 +97,31 @@ public class BitInputStream implements BitReader {
      * @return true if it is a 1 bit.
      */
     public boolean bit() throws IOException {
-        return read(1) != 0;
+        if (this.available == 0) {
+            fill(1);
+        }
+        this.available -= 1;
+        this.nrBits += 1;
+        return ((this.unread >>> this.available) & 1) != 0;
+    }
+
+    /**
+     * Take bytes from the InputStream until at least width bits are
+     * available.
+     *
+     * @param width
+     *            The number of bits needed. (1..32)
+     * @throws IOException
+     */
+    private void fill(int width) throws IOException {
+        while (this.available < width) {
+            int b = this.in.read();
+            if (b < 0) {
+                throw new IOException("Attempt to read past end.");
+            }
+            this.unread = (this.unread << 8) | b;
+            this.available += 8;
+        }
     }
 
     /**
@@ -122,10 +150,12 @@ public class BitInputStream implements BitReader {
         int padding = factor - (int) (this.nrBits % factor);
         boolean result = true;
 
-        for (int i = 0; i < padding; i += 1) {
-            if (bit()) {
+        while (padding > 0) {
+            int width = Math.min(padding, 32);
+            if (read(width) != 0) {
                 result = false;
             }
+            padding -= width;
         }
         return result;
     }
@@ -145,25 +175,12 @@ public class BitInputStream implements BitReader {
         if (width < 0 || width > 32) {
             throw new IOException("Bad read width.");
         }
-        int result = 0;
-        while (width > 0) {
-            if (this.available == 0) {
-                this.unread = this.in.read();
-                if (this.unread < 0) {
-                    throw new IOException("Attempt to read past end.");
-                }
-                this.available = 8;
-            }
-            int take = width;
-            if (take > this.available) {
-                take = this.available;
-            }
-            result |= ((this.unread >>> (this.available - take)) & mask[take])
-                    << (width - take);
-            this.nrBits += take;
-            this.available -= take;
-            width -= take;
+        if (this.available < width) {
+            fill(width);
         }
-        return result;
+        this.available -= width;
+        this.nrBits += width;
+        return (int) (this.unread >>> this.available)
+                & (int) (-1L >>> (64 - width));
     }
 }
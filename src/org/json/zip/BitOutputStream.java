@@ -29,8 +29,12 @@ import java.io.OutputStream;
 
 /**
  * This is a big endian bit writer. It writes its bits to an OutputStream.
+ * Bits are gathered in a 64 bit accumulator and sent to the OutputStream a
+ * few bytes at a time, so nothing is sent until at least 32 bits have been
+ * written, and the last bits are only sent by pad. To write bits into memory,
+ * BitBufferWriter is faster.
  *
- * @version 2013-04-18
+ * @version 2014-09-25
  *
  */
 public class BitOutputStream implements BitWriter {
@@ -46,18 +50,24 @@ public class BitOutputStream implements BitWriter {
     private OutputStream out;
 
     /**
-     * Holder of bits not yet written.
+     * The bytes being sent to the OutputStream.
      */
-    private int unwritten;
+    private final byte[] bytes = new byte[8];
 
     /**
-     * The number of unused bits in this.unwritten.
+     * Holder of bits not yet written, in the low end. Any bits above them
+     * are garbage.
      */
-    private int vacant = 8;
+    private long unwritten;
+
+    /**
+     * The number of bits in this.unwritten.
+     */
+    private int used = 0;
 
     /**
      * Use an OutputStream to produce a BitWriter. The BitWriter will send its
-     * bits to the OutputStream as each byte is filled.
+     * bits to the OutputStream as bytes are filled.
      *
      * @param out
      *            An Output Stream
@@ -66,6 +76,21 @@ public class BitOutputStream implements BitWriter {
         this.out = out;
     }
 
+    /**
+     * Send the whole bytes in this.unwritten to the OutputStream.
+     *
+     * @throws IOException
+     */
+    private void drain() throws IOException {
+        int length = 0;
+        while (this.used >= 8) {
+            this.used -= 8;
+            this.bytes[length] = (byte) (this.unwritten >>> this.used);
+            length += 1;
+        }
+        this.out.write(this.bytes, 0, length);
+    }
+
     /**
      * Returns the number of bits that have been written to this
      * bitOutputStream. This may include bits that have not yet been written
@@ -96,15 +121,12 @@ public class BitOutputStream implements BitWriter {
      */
     public void pad(int factor) throws IOException {
         int padding = factor - (int) (nrBits % factor);
-        int excess = padding & 7;
-        if (excess > 0) {
-            this.write(0, excess);
-            padding -= excess;
-        }
         while (padding > 0) {
-            this.write(0, 8);
-            padding -= 8;
+            int width = Math.min(padding, 32);
+            this.write(0, width);
+            padding -= width;
         }
+        this.drain();
         this.out.flush();
     }
 
@@ -124,21 +146,12 @@ public class BitOutputStream implements BitWriter {
         if (width <= 0 || width > 32) {
             throw new IOException("Bad write width.");
         }
-        while (width > 0) {
-            int actual = width;
-            if (actual > this.vacant) {
-                actual = this.vacant;
-            }
-            this.unwritten |= ((bits >>> (width - actual)) &
-                    BitInputStream.mask[actual]) << (this.vacant - actual);
-            width -= actual;
-            nrBits += actual;
-            this.vacant -= actual;
-            if (this.vacant == 0) {
-                this.out.write(this.unwritten);
-                this.unwritten = 0;
-                this.vacant = 8;
-            }
+        this.unwritten = (this.unwritten << width)
+                | (bits & (-1L >>> (64 - width)));
+        this.used += width;
+        this.nrBits += width;
+        if (this.used >= 32) {
+            this.drain();
         }
     }
 
@@ -56,6 +56,30 @@ public class Compressor extends JSONzip {
      */
     final BitWriter bitwriter;
 
+    /**
+     * The number of strings that the kim cache holds. It must be a power of
+     * 2.
+     */
+    private static final int kimCacheSize = 1024;
+
+    /**
+     * The longest string that is put in the kim cache. Long strings seldom
+     * repeat, and would make the cache large.
+     */
+    private static final int kimCacheLimit = 128;
+
+    /**
+     * The kim cache holds the kims of recently written names and strings, so
+     * that a name or string that is written again is not converted again.
+     * Each string has one slot, chosen by its hashcode.
+     */
+    private final Kim[] kims = new Kim[kimCacheSize];
+
+    /**
+     * The strings of the kims in the kim cache.
+     */
+    private final String[] kimStrings = new String[kimCacheSize];
+
     /**
      * Create a new compressor. It may be used for an entire session or
      * subsession.
@@ -69,6 +93,21 @@ public class Compressor extends JSONzip {
         this.bitwriter = bitwriter;
     }
 
+    /**
+     * Create a new compressor that starts from a Dictionary. Its output can
+     * only be read by a Decompressor with the same Dictionary.
+     *
+     * @param bitwriter
+     *            The BitWriter this Compressor will output to. Don't forget to
+     *            flush.
+     * @param dictionary
+     *            The learned starting state.
+     */
+    public Compressor(BitWriter bitwriter, Dictionary dictionary) {
+        super(dictionary);
+        this.bitwriter = bitwriter;
+    }
+
     /**
      * Return a 4 bit code for a character in a JSON number. The digits '0' to
      * '9' get the codes 0 to 9. '.' is 10, '-' is 11, '+' is 12, and 'E' or
@@ -104,6 +143,29 @@ public class Compressor extends JSONzip {
         pad(8);
     }
 
+    /**
+     * Get the kim of a string, from the kim cache if it is there.
+     *
+     * @param string
+     * @return The kim.
+     * @throws JSONException
+     */
+    private Kim kim(String string) throws JSONException {
+        if (string.length() > kimCacheLimit) {
+            return new Kim(string);
+        }
+        int hash = string.hashCode();
+        int slot = (hash ^ (hash >>> 16)) & (kimCacheSize - 1);
+        String cached = this.kimStrings[slot];
+        if (cached == string || (cached != null && cached.equals(string))) {
+            return this.kims[slot];
+        }
+        Kim kim = new Kim(string);
+        this.kimStrings[slot] = string;
+        this.kims[slot] = kim;
+        return kim;
+    }
+
     /**
      * Output a one bit.
      *
@@ -319,7 +381,7 @@ public class Compressor extends JSONzip {
 // If this name has already been registered, then emit its integer and
 // increment its usage count.
 
-        Kim kim = new Kim(name);
+        Kim kim = kim(name);
         int integer = this.namekeep.find(kim);
         if (integer != none) {
             one();
@@ -395,7 +457,7 @@ public class Compressor extends JSONzip {
             write(end, this.substringhuff);
             zero();
         } else {
-            Kim kim = new Kim(string);
+            Kim kim = kim(string);
 
 // Look for the string in the strings keep. If it is found, emit its
 // integer and count that as a use.
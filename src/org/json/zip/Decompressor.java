@@ -45,6 +45,12 @@ public class Decompressor extends JSONzip {
      */
     BitReader bitreader;
 
+    /**
+     * The buffer in which names and strings are assembled. It is kept for the
+     * whole session rather than made for each name or string.
+     */
+    private final byte[] bytes = new byte[65536];
+
     /**
      * Create a new compressor. It may be used for an entire session or
      * subsession.
@@ -57,6 +63,20 @@ public class Decompressor extends JSONzip {
         this.bitreader = bitreader;
     }
 
+    /**
+     * Create a new decompressor that starts from a Dictionary. It can read
+     * the output of a Compressor with the same Dictionary.
+     *
+     * @param bitreader
+     *            The bitreader that this decompressor will read from.
+     * @param dictionary
+     *            The learned starting state.
+     */
+    public Decompressor(BitReader bitreader, Dictionary dictionary) {
+        super(dictionary);
+        this.bitreader = bitreader;
+    }
+
     /**
      * Read one bit.
      *
@@ -196,7 +216,7 @@ public class Decompressor extends JSONzip {
     }
 
     private String readName() throws JSONException {
-        byte[] bytes = new byte[65536];
+        byte[] bytes = this.bytes;
         int length = 0;
         if (!bit()) {
             while (true) {
@@ -240,7 +260,7 @@ public class Decompressor extends JSONzip {
         if (bit()) {
             return getAndTick(this.stringkeep, this.bitreader).toString();
         }
-        byte[] bytes = new byte[65536];
+        byte[] bytes = this.bytes;
         boolean one = bit();
         this.substringkeep.reserve();
         while (true) {
@@ -0,0 +1,390 @@
+package org.json.zip;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONString;
+import org.json.Kim;
+
+/*
+ Copyright (c) 2013 JSON.org
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ The Software shall be used for Good, not Evil.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+/**
+ * A Dictionary is a starting state for JSONzip, learned from a sample of
+ * typical messages. It holds the weights of the two Huffman encoders and the
+ * names, strings, and numbers that occurred more than once in the sample. A
+ * Compressor and a Decompressor made with the same Dictionary start out
+ * knowing what a fresh pair would only learn after seeing the sample, so even
+ * the first small message is compressed well.
+ *
+ * A stream written with a Dictionary can only be read with the same
+ * Dictionary. A Dictionary can be saved as JSON text with toString and
+ * restored with new Dictionary(new JSONObject(text)). The saved text records
+ * its format, and a Dictionary saved in a different format is refused rather
+ * than silently producing streams that the other side cannot read.
+ *
+ * <pre>
+ * Dictionary dictionary = Dictionary.train(samples);
+ * Compressor compressor = new Compressor(bitwriter, dictionary);
+ * Decompressor decompressor = new Decompressor(bitreader, dictionary);
+ * </pre>
+ *
+ * @author JSON.org
+ * @version 2014-09-25
+ */
+public class Dictionary implements JSONString {
+
+    /**
+     * The format of a saved Dictionary. It must change whenever the saved
+     * fields, or the way seed uses them, change.
+     */
+    static final int format = 1;
+
+    /**
+     * The largest Huffman weight kept. Trained weights are scaled down to
+     * this, so that a session can still adapt to its own messages.
+     */
+    static final long maxWeight = 4096;
+
+    /**
+     * The largest use count kept for a name, string, or number.
+     */
+    static final long maxUses = 32;
+
+    /**
+     * The weights of the name Huffman encoder.
+     */
+    private final long[] nameWeights;
+
+    /**
+     * The names, most used first.
+     */
+    private final String[] names;
+
+    /**
+     * The use counts of the names.
+     */
+    private final long[] nameUses;
+
+    /**
+     * The strings, most used first.
+     */
+    private final String[] strings;
+
+    /**
+     * The use counts of the strings.
+     */
+    private final long[] stringUses;
+
+    /**
+     * The weights of the string Huffman encoder.
+     */
+    private final long[] substringWeights;
+
+    /**
+     * The numbers, as JSON text, most used first.
+     */
+    private final String[] values;
+
+    /**
+     * The use counts of the numbers.
+     */
+    private final long[] valueUses;
+
+    /**
+     * Restore a Dictionary from the JSONObject produced by toJSONObject.
+     *
+     * @param jsonobject
+     *            A saved Dictionary.
+     * @throws JSONException
+     *             If the object is not a saved Dictionary, or was saved in
+     *             a different format.
+     */
+    public Dictionary(JSONObject jsonobject) throws JSONException {
+        if (jsonobject.optInt("format", 0) != format) {
+            throw new JSONException("Unsupported dictionary format.");
+        }
+        this.nameWeights = weights(jsonobject.getJSONArray("namehuff"));
+        this.substringWeights =
+                weights(jsonobject.getJSONArray("substringhuff"));
+        JSONArray names = jsonobject.getJSONArray("names");
+        JSONArray strings = jsonobject.getJSONArray("strings");
+        JSONArray values = jsonobject.getJSONArray("values");
+        this.names = new String[names.length()];
+        this.nameUses = new long[names.length()];
+        this.strings = new String[strings.length()];
+        this.stringUses = new long[strings.length()];
+        this.values = new String[values.length()];
+        this.valueUses = new long[values.length()];
+        read(names, this.names, this.nameUses);
+        read(strings, this.strings, this.stringUses);
+        read(values, this.values, this.valueUses);
+    }
+
+    /**
+     * Make a Dictionary from the state of a JSONzip that has been trained.
+     */
+    private Dictionary(JSONzip zip) {
+        this.nameWeights = scale(zip.namehuff);
+        this.substringWeights = scale(zip.substringhuff);
+        List<Common> names = common(zip.namekeep);
+        List<Common> strings = common(zip.stringkeep);
+        List<Common> values = common(zip.values);
+        this.names = new String[names.size()];
+        this.nameUses = new long[names.size()];
+        this.strings = new String[strings.size()];
+        this.stringUses = new long[strings.size()];
+        this.values = new String[values.size()];
+        this.valueUses = new long[values.size()];
+        copy(names, this.names, this.nameUses);
+        copy(strings, this.strings, this.stringUses);
+        copy(values, this.values, this.valueUses);
+    }
+
+    /**
+     * An item found in a keep, with its use count.
+     */
+    private static class Common {
+        final String item;
+        final long uses;
+
+        Common(String item, long uses) {
+            this.item = item;
+            this.uses = uses;
+        }
+    }
+
+    /**
+     * Find the items in a keep that were used more than once, most used
+     * first. At most half of the keep's capacity is taken, so that a session
+     * still has room for its own items.
+     */
+    private static List<Common> common(MapKeep keep) {
+        List<Common> list = new ArrayList<Common>();
+        for (int i = 0; i < keep.length; i += 1) {
+            if (keep.uses[i] > 1) {
+                list.add(new Common(keep.value(i).toString(), keep.uses[i]));
+            }
+        }
+        Collections.sort(list, new Comparator<Common>() {
+            public int compare(Common a, Common b) {
+                return Long.compare(b.uses, a.uses);
+            }
+        });
+        int limit = keep.capacity / 2;
+        return list.size() > limit ? list.subList(0, limit) : list;
+    }
+
+    /**
+     * Copy a list made by common into arrays.
+     */
+    private static void copy(List<Common> list, String[] items, long[] uses) {
+        for (int i = 0; i < items.length; i += 1) {
+            Common common = list.get(i);
+            items[i] = common.item;
+            uses[i] = Math.min(common.uses, maxUses);
+        }
+    }
+
+    /**
+     * Read a JSONArray of [item, uses] pairs into arrays.
+     */
+    private static void read(JSONArray jsonarray, String[] items, long[] uses)
+            throws JSONException {
+        for (int i = 0; i < items.length; i += 1) {
+            JSONArray pair = jsonarray.getJSONArray(i);
+            items[i] = pair.getString(0);
+            uses[i] = Math.max(1, Math.min(pair.getLong(1), maxUses));
+        }
+    }
+
+    /**
+     * Get the weights of a Huffman encoder, scaled so that the heaviest is
+     * at most maxWeight. A symbol that was used keeps a weight of at least 1.
+     */
+    private static long[] scale(Huff huff) {
+        long[] weights = new long[JSONzip.end + 1];
+        long max = 1;
+        for (int i = 0; i < weights.length; i += 1) {
+            weights[i] = huff.weight(i);
+            max = Math.max(max, weights[i]);
+        }
+        if (max > maxWeight) {
+            for (int i = 0; i < weights.length; i += 1) {
+                if (weights[i] > 0) {
+                    weights[i] = Math.max(1, weights[i] * maxWeight / max);
+                }
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Read a JSONArray of Huffman weights.
+     */
+    private static long[] weights(JSONArray jsonarray) throws JSONException {
+        if (jsonarray.length() != JSONzip.end + 1) {
+            throw new JSONException("Bad dictionary weights.");
+        }
+        long[] weights = new long[jsonarray.length()];
+        for (int i = 0; i < weights.length; i += 1) {
+            weights[i] = Math.max(0, Math.min(jsonarray.getLong(i),
+                    maxWeight));
+        }
+        return weights;
+    }
+
+    /**
+     * Put this Dictionary's state into a new Compressor or Decompressor.
+     * Both sides must do exactly the same things in the same order, so that
+     * their keeps and encoders match.
+     *
+     * @param zip
+     *            A JSONzip that has not yet been used.
+     */
+    void seed(JSONzip zip) throws JSONException {
+        for (int i = 0; i < this.nameWeights.length; i += 1) {
+            zip.namehuff.weigh(i, this.nameWeights[i]);
+            zip.substringhuff.weigh(i, this.substringWeights[i]);
+        }
+        for (int i = 0; i < this.names.length; i += 1) {
+            register(zip.namekeep, new Kim(this.names[i]), this.nameUses[i]);
+        }
+        for (int i = 0; i < this.strings.length; i += 1) {
+            Kim kim = new Kim(this.strings[i]);
+            register(zip.stringkeep, kim, this.stringUses[i]);
+            zip.substringkeep.reserve();
+            zip.substringkeep.registerMany(kim);
+        }
+
+// A Compressor looks numbers up by their text, while a Decompressor keeps the
+// numbers themselves.
+
+        boolean numbers = zip instanceof Decompressor;
+        for (int i = 0; i < this.values.length; i += 1) {
+            register(zip.values, numbers
+                    ? JSONObject.stringToValue(this.values[i])
+                    : this.values[i], this.valueUses[i]);
+        }
+    }
+
+    /**
+     * Register an item in a keep with a use count.
+     */
+    private static void register(MapKeep keep, Object item, long uses) {
+        keep.register(item);
+        keep.uses[keep.length - 1] = uses;
+    }
+
+    /**
+     * Make a JSONArray of [item, uses] pairs.
+     */
+    private static JSONArray pairs(String[] items, long[] uses) {
+        JSONArray jsonarray = new JSONArray();
+        for (int i = 0; i < items.length; i += 1) {
+            jsonarray.put(new JSONArray().put(items[i]).put(uses[i]));
+        }
+        return jsonarray;
+    }
+
+    /**
+     * Learn a Dictionary from a sample of messages. Each message is
+     * compressed in turn by one Compressor, and the names, strings, and
+     * numbers that it saw more than once become the Dictionary.
+     *
+     * @param samples
+     *            A JSONArray of JSONObjects or JSONArrays, each a typical
+     *            message.
+     * @return A new Dictionary.
+     * @throws JSONException
+     *             If a sample cannot be compressed.
+     */
+    public static Dictionary train(JSONArray samples) throws JSONException {
+        Compressor compressor = new Compressor(new BitWriter() {
+            private long nrBits = 0;
+
+            public long nrBits() {
+                return this.nrBits;
+            }
+
+            public void one() {
+                this.nrBits += 1;
+            }
+
+            public void pad(int factor) {
+                this.nrBits += factor - (int) (this.nrBits % factor);
+            }
+
+            public void write(int bits, int width) {
+                this.nrBits += width;
+            }
+
+            public void zero() {
+                this.nrBits += 1;
+            }
+        });
+        for (int i = 0; i < samples.length(); i += 1) {
+            Object sample = samples.get(i);
+            if (sample instanceof JSONObject) {
+                compressor.zip((JSONObject) sample);
+            } else {
+                compressor.zip(samples.getJSONArray(i));
+            }
+        }
+        return new Dictionary(compressor);
+    }
+
+    /**
+     * Make a JSONObject holding this Dictionary.
+     *
+     * @return A JSONObject that new Dictionary(JSONObject) can restore.
+     * @throws JSONException
+     */
+    public JSONObject toJSONObject() throws JSONException {
+        JSONObject jsonobject = new JSONObject();
+        jsonobject.put("format", format);
+        jsonobject.put("namehuff", new JSONArray(this.nameWeights));
+        jsonobject.put("substringhuff", new JSONArray(this.substringWeights));
+        jsonobject.put("names", pairs(this.names, this.nameUses));
+        jsonobject.put("strings", pairs(this.strings, this.stringUses));
+        jsonobject.put("values", pairs(this.values, this.valueUses));
+        return jsonobject;
+    }
+
+    public String toJSONString() {
+        return this.toJSONObject().toString();
+    }
+
+    /**
+     * Make the JSON text of this Dictionary.
+     */
+    public String toString() {
+        return this.toJSONString();
+    }
+}
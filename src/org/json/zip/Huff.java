@@ -1,5 +1,7 @@
 package org.json.zip;
 
+import java.util.Arrays;
+
 import org.json.JSONException;
 
 /*
@@ -42,9 +44,38 @@ import org.json.JSONException;
  * symbol is incremented by the tick method. The generate method is used to
  * generate the encoding table. The table must be generated before encoding or
  * decoding. You may regenerate the table with the latest weights at any time.
+ *
+ * Generating the table also makes a code for each symbol, so a symbol can be
+ * written with a single call to the BitWriter. When reading from a
+ * BitBufferReader, codes are decoded tableBits bits at a time with a lookup
+ * table instead of a bit at a time by walking the tree. The codes are the same
+ * either way.
  */
 public class Huff implements None, PostMortem {
 
+    /**
+     * The number of bits looked up at a time when decoding.
+     */
+    static final int tableBits = 10;
+
+    /**
+     * The decoding table, or null if none has been needed yet. It is indexed
+     * by the next tableBits bits. Each entry holds a symbol's number shifted
+     * left 8 bits plus the length of its code, or -1 if the code is longer
+     * than tableBits.
+     */
+    private int[] lookup;
+
+    /**
+     * Has the decoding table been made since the table was last generated?
+     */
+    private boolean lookupUpToDate = false;
+
+    /**
+     * The leaf symbols, sorted by weight.
+     */
+    private final Symbol[] sorted;
+
     /**
      * The number of symbols known to the encoder.
      */
@@ -72,7 +103,8 @@ public class Huff implements None, PostMortem {
 
     private static class Symbol implements PostMortem {
         public Symbol back;
-        public Symbol next;
+        public int code;
+        public int length;
         public Symbol zero;
         public Symbol one;
         public final int integer;
@@ -87,7 +119,6 @@ public class Huff implements None, PostMortem {
         public Symbol(int integer) {
             this.integer = integer;
             this.weight = 0;
-            this.next = null;
             this.back = null;
             this.one = null;
             this.zero = null;
@@ -146,6 +177,8 @@ public class Huff implements None, PostMortem {
         for (int i = domain; i < length; i += 1) {
             symbols[i] = new Symbol(none);
         }
+        this.sorted = new Symbol[domain];
+        System.arraycopy(this.symbols, 0, this.sorted, 0, domain);
     }
 
     /**
@@ -157,99 +190,113 @@ public class Huff implements None, PostMortem {
     public void generate() {
         if (!this.upToDate) {
 
-// Phase One: Sort the symbols by weight into a linked list.
-
-            Symbol head = this.symbols[0];
-            Symbol next;
-            Symbol previous = head;
-            Symbol symbol;
+// Phase One: Sort the symbols by weight. Symbols of equal weight stay in
+// order by number. The sort is an insertion sort that starts from the last
+// order. Between generations only the symbols that were used get heavier, so
+// few symbols move, and they do not move far.
 
-            this.table = null;
-            head.next = null;
+            Symbol[] sorted = this.sorted;
             for (int i = 1; i < this.domain; i += 1) {
-                symbol = symbols[i];
-
-// If this symbol weights less than the head, then it becomes the new head.
-
-                if (symbol.weight < head.weight) {
-                    symbol.next = head;
-                    head = symbol;
-                } else {
-
-// To save time, we will start the search from the previous symbol instead
-// of the head unless the current symbol weights less than the previous symbol.
-
-                    if (symbol.weight < previous.weight) {
-                        previous = head;
-                    }
-
-// Find a connected pair (previous and next) where the symbol weighs the same
-// or more than previous but less than the next. Link the symbol between them.
-
-                    while (true) {
-                        next = previous.next;
-                        if (next == null || symbol.weight < next.weight) {
-                            break;
-                        }
-                        previous = next;
-                    }
-                    symbol.next = next;
-                    previous.next = symbol;
-                    previous = symbol;
+                Symbol symbol = sorted[i];
+                int j = i;
+                while (j > 0 && (sorted[j - 1].weight > symbol.weight
+                        || (sorted[j - 1].weight == symbol.weight
+                        && sorted[j - 1].integer > symbol.integer))) {
+                    sorted[j] = sorted[j - 1];
+                    j -= 1;
                 }
+                sorted[j] = symbol;
             }
 
 // Phase Two: Make new symbols from the two lightest symbols until only one
 // symbol remains. The final symbol becomes the root of the table binary tree.
+// The new symbols are made in order of weight, so they form a second sorted
+// list after the leaves. When a leaf and a new symbol weigh the same, the
+// leaf is taken first.
 
-            int avail = this.domain;
-            Symbol first;
-            Symbol second;
-            previous = head;
+            int leaf = 0;
+            int made = this.domain;
+            int taken = this.domain;
+            Symbol symbol;
             while (true) {
-                first = head;
-                second = first.next;
-                head = second.next;
-                symbol = this.symbols[avail];
-                avail += 1;
+                Symbol first;
+                Symbol second;
+                if (leaf < this.domain && (taken == made
+                        || this.sorted[leaf].weight
+                        <= this.symbols[taken].weight)) {
+                    first = this.sorted[leaf];
+                    leaf += 1;
+                } else {
+                    first = this.symbols[taken];
+                    taken += 1;
+                }
+                if (leaf < this.domain && (taken == made
+                        || this.sorted[leaf].weight
+                        <= this.symbols[taken].weight)) {
+                    second = this.sorted[leaf];
+                    leaf += 1;
+                } else {
+                    second = this.symbols[taken];
+                    taken += 1;
+                }
+                symbol = this.symbols[made];
+                made += 1;
                 symbol.weight = first.weight + second.weight;
                 symbol.zero = first;
                 symbol.one = second;
                 symbol.back = null;
                 first.back = symbol;
                 second.back = symbol;
-                if (head == null) {
+                if (leaf == this.domain && taken == made - 1) {
                     break;
                 }
-
-// Insert the new symbol back into the sorted list.
-
-                if (symbol.weight < head.weight) {
-                    symbol.next = head;
-                    head = symbol;
-                    previous = head;
-                } else {
-                    while (true) {
-                        next = previous.next;
-                        if (next == null || symbol.weight < next.weight) {
-                            break;
-                        }
-                        previous = next;
-                    }
-                    symbol.next = next;
-                    previous.next = symbol;
-                    previous = symbol;
-                }
-
             }
 
 // The last remaining symbol is the root of the table.
 
             this.table = symbol;
+
+// Phase Three: Give each symbol its code, working down from the root. Each
+// new symbol was made before the symbol that links to it, so going backward
+// through them reaches every parent before its children. Codes longer than
+// 32 bits are written a bit at a time by following the links.
+
+            symbol.code = 0;
+            symbol.length = 0;
+            for (int i = made - 1; i >= this.domain; i -= 1) {
+                Symbol parent = this.symbols[i];
+                int code = parent.code << 1;
+                int length = parent.length + 1;
+                parent.zero.code = code;
+                parent.zero.length = length;
+                parent.one.code = code | 1;
+                parent.one.length = length;
+            }
+            this.lookupUpToDate = false;
             this.upToDate = true;
         }
     }
 
+    /**
+     * Make the decoding table from the codes.
+     */
+    private void lookup() {
+        if (this.lookup == null) {
+            this.lookup = new int[1 << tableBits];
+        }
+        int[] lookup = this.lookup;
+        Arrays.fill(lookup, -1);
+        for (int integer = 0; integer < this.domain; integer += 1) {
+            int length = this.symbols[integer].length;
+            if (length <= tableBits) {
+                int from = this.symbols[integer].code << (tableBits - length);
+                int thru = from + (1 << (tableBits - length));
+                Arrays.fill(lookup, from, thru, (integer << 8) | length);
+            }
+        }
+        this.lookupUpToDate = true;
+    }
+
     private boolean postMortem(int integer) {
         int[] bits = new int[this.domain];
         Symbol symbol = this.symbols[integer];
@@ -314,16 +361,32 @@ public class Huff implements None, PostMortem {
     public int read(BitReader bitreader) throws JSONException {
         try {
             this.width = 0;
-            Symbol symbol = this.table;
-            while (symbol.integer == none) {
-                this.width += 1;
-                symbol = bitreader.bit() ? symbol.one : symbol.zero;
+            int integer;
+            int entry = -1;
+            if (bitreader instanceof BitBufferReader) {
+                if (!this.lookupUpToDate) {
+                    lookup();
+                }
+                entry = this.lookup[((BitBufferReader) bitreader)
+                        .peek(tableBits)];
+            }
+            if (entry >= 0) {
+                this.width = entry & 0xFF;
+                bitreader.read(this.width);
+                integer = entry >>> 8;
+            } else {
+                Symbol symbol = this.table;
+                while (symbol.integer == none) {
+                    this.width += 1;
+                    symbol = bitreader.bit() ? symbol.one : symbol.zero;
+                }
+                integer = symbol.integer;
             }
-            tick(symbol.integer);
+            tick(integer);
             if (JSONzip.probe) {
-                JSONzip.logchar(symbol.integer, this.width);
+                JSONzip.logchar(integer, this.width);
             }
-            return symbol.integer;
+            return integer;
         } catch (Throwable e) {
             throw new JSONException(e);
         }
@@ -341,6 +404,31 @@ public class Huff implements None, PostMortem {
         this.upToDate = false;
     }
 
+    /**
+     * Increase the weight associated with a value by some amount. This is
+     * used to start an encoder from learned weights.
+     *
+     * @param value
+     *            The number of the symbol to weigh
+     * @param weight
+     *            The amount to add to its weight
+     */
+    void weigh(int value, long weight) {
+        this.symbols[value].weight += weight;
+        this.upToDate = false;
+    }
+
+    /**
+     * Get the weight associated with a value.
+     *
+     * @param value
+     *            The number of a symbol
+     * @return Its weight
+     */
+    long weight(int value) {
+        return this.symbols[value].weight;
+    }
+
     /**
      * Increase by 1 the weight associated with a range of values.
      *
@@ -397,7 +485,18 @@ public class Huff implements None, PostMortem {
      */
     public void write(int value, BitWriter bitwriter) throws JSONException {
         this.width = 0;
-        write(this.symbols[value], bitwriter);
+        Symbol symbol = this.symbols[value];
+        int length = symbol.length;
+        if (length <= 32) {
+            try {
+                this.width = length;
+                bitwriter.write(symbol.code, length);
+            } catch (Throwable e) {
+                throw new JSONException(e);
+            }
+        } else {
+            write(symbol, bitwriter);
+        }
         tick(value);
         if (JSONzip.probe) {
             JSONzip.logchar(value, this.width);
@@ -182,12 +182,27 @@ public abstract class JSONzip implements None, PostMortem {
      * Initialize the data structures.
      */
     protected JSONzip() {
+        this(null);
+    }
+
+    /**
+     * Initialize the data structures, starting from a Dictionary.
+     *
+     * @param dictionary
+     *            The learned starting state, or null to start with only the
+     *            usual weights.
+     */
+    protected JSONzip(Dictionary dictionary) {
         this.namehuff = new Huff(end + 1);
         this.namekeep = new MapKeep(9);
         this.stringkeep = new MapKeep(11);
         this.substringhuff = new Huff(end + 1);
         this.substringkeep = new TrieKeep(12);
         this.values = new MapKeep(10);
+        if (dictionary != null) {
+            dictionary.seed(this);
+            return;
+        }
 
 // Increase the weights of the ASCII letters, digits, and special characters
 // because they are highly likely to occur more frequently. The weight of each
@@ -1,6 +1,6 @@
 package org.json.zip;
 
-import java.util.HashMap;
+import java.util.Arrays;
 
 import org.json.Kim;
 
@@ -34,10 +34,23 @@ import org.json.Kim;
  * little used associations, and ages the survivors. Each key is assigned an
  * integer value. When the keep is compacted, each key can be given a new
  * value.
+ *
+ * The keys are found with an open-addressed hash table of ints, so no
+ * Integers are made.
  */
 class MapKeep extends Keep {
     private Object[] list;
-    private HashMap map;
+
+    /**
+     * The hash table. Each slot holds one more than the integer of a key, or
+     * 0 if it is empty. It is twice the capacity, so it is at most half full.
+     */
+    private int[] table;
+
+    /**
+     * The number of bits in an index into the table.
+     */
+    private int tableBits;
 
     /**
      * Create a new Keep.
@@ -48,7 +61,8 @@ class MapKeep extends Keep {
     public MapKeep(int bits) {
         super(bits);
         this.list = new Object[this.capacity];
-        this.map = new HashMap(this.capacity);
+        this.tableBits = bits + 1;
+        this.table = new int[JSONzip.twos[this.tableBits]];
     }
 
     /**
@@ -65,19 +79,19 @@ class MapKeep extends Keep {
             if (usage > 0) {
                 this.uses[to] = usage;
                 this.list[to] = key;
-                this.map.put(key, new Integer(to));
                 to += 1;
-            } else {
-                this.map.remove(key);
             }
             from += 1;
         }
-        if (to < this.capacity) {
-            this.length = to;
-        } else {
-            this.map.clear();
-            this.length = 0;
+        if (to >= this.capacity) {
+            to = 0;
         }
+        Arrays.fill(this.list, to, this.capacity, null);
+        Arrays.fill(this.table, 0);
+        for (int i = 0; i < to; i += 1) {
+            this.table[slot(this.list[i])] = i + 1;
+        }
+        this.length = to;
         this.power = 0;
     }
 
@@ -90,8 +104,23 @@ class MapKeep extends Keep {
      * @return An integer
      */
     public int find(Object key) {
-        Object o = this.map.get(key);
-        return o instanceof Integer ? ((Integer) o).intValue() : none;
+        return this.table[slot(key)] - 1;
+    }
+
+    /**
+     * Find the slot in the table that holds a key, or the empty slot where
+     * it would go.
+     */
+    private int slot(Object key) {
+        int mask = this.table.length - 1;
+        int at = (key.hashCode() * 0x9E3779B9) >>> (32 - this.tableBits);
+        while (true) {
+            int integer = this.table[at];
+            if (integer == 0 || key.equals(this.list[integer - 1])) {
+                return at;
+            }
+            at = (at + 1) & mask;
+        }
     }
 
     public boolean postMortem(PostMortem pm) {
@@ -141,7 +170,7 @@ class MapKeep extends Keep {
             compact();
         }
         this.list[this.length] = value;
-        this.map.put(value, new Integer(this.length));
+        this.table[slot(value)] = this.length + 1;
         this.uses[this.length] = 1;
         if (JSONzip.probe) {
             JSONzip.log("<" + this.length + " " + value + "> ");
@@ -1,5 +1,7 @@
 package org.json.zip;
 
+import java.util.Arrays;
+
 import org.json.Kim;
 
 /*
@@ -28,150 +30,47 @@ import org.json.Kim;
 
 /**
  * A TrieKeep is a Keep that implements a Trie.
+ *
+ * The trie is kept flat. Each node is a number, and its integer is kept in an
+ * int array. The links are kept in an open-addressed hash table keyed by the
+ * node and the byte, so a node costs a few ints instead of an array of 256
+ * links.
  */
 class TrieKeep extends Keep {
 
     /**
-     * The trie is made of nodes.
+     * The keys of the links: the node shifted left 8 bits plus the byte, or
+     * -1 if the slot is empty.
      */
-    class Node implements PostMortem {
-        private int integer;
-        private Node[] next;
-
-        /**
-         * Each non-leaf node contains links to up to 256 next nodes. Each node
-         * has an integer value.
-         */
-        public Node() {
-            this.integer = none;
-            this.next = null;
-        }
-
-        /**
-         * Get one of a node's 256 links. If it is a leaf node, it returns
-         * null.
-         *
-         * @param cell
-         *            A integer between 0 and 255.
-         * @return
-         */
-        public Node get(int cell) {
-            return this.next == null ? null : this.next[cell];
-        }
-
-        /**
-         * Get one of a node's 256 links. If it is a leap node, it returns
-         * null. The argument is treated as an unsigned integer.
-         *
-         * @param cell
-         *            A byte.
-         * @return
-         */
-        public Node get(byte cell) {
-            return get(((int) cell) & 0xFF);
-        }
+    private int[] linkKeys;
 
-        /**
-         * Compare two nodes. Their lengths must be equal. Their links must
-         * also compare.
-         */
-        public boolean postMortem(PostMortem pm) {
-            Node that = (Node) pm;
-            if (that == null) {
-                JSONzip.log("\nMisalign");
-                return false;
-            }
-            if (this.integer != that.integer) {
-                JSONzip.log("\nInteger " + this.integer + " <> " +
-                        that.integer);
-                return false;
-            }
-            if (this.next == null) {
-                if (that.next == null) {
-                    return true;
-                }
-                JSONzip.log("\nNext is null " + this.integer);
-                return false;
-            }
-            for (int i = 0; i < 256; i += 1) {
-                Node node = this.next[i];
-                if (node != null) {
-                    if (!node.postMortem(that.next[i])) {
-                        return false;
-                    }
-                } else if (that.next[i] != null) {
-                    JSONzip.log("\nMisalign " + i);
-                    return false;
-                }
-            }
-            return true;
-        }
+    /**
+     * The node that each link leads to.
+     */
+    private int[] linkNodes;
 
-        /**
-         * Set a node's link to another node.
-         *
-         * @param cell
-         *            An integer between 0 and 255.
-         * @param node
-         *            The new value for the cell.
-         */
-        public void set(int cell, Node node) {
-            if (this.next == null) {
-                this.next = new Node[256];
-            }
-            if (JSONzip.probe) {
-                if (node == null || this.next[cell] != null) {
-                    JSONzip.log("\nUnexpected set.\n");
-                }
-            }
-            this.next[cell] = node;
-        }
+    /**
+     * The number of links.
+     */
+    private int links;
 
-        /**
-         * Set a node's link to another node.
-         *
-         * @param cell
-         *            A byte.
-         * @param node
-         *            The new value for the cell.
-         */
-        public void set(byte cell, Node node) {
-            set(((int) cell) & 0xFF, node);
-        }
+    /**
+     * The shift that turns a hashed key into an index into the links.
+     */
+    private int linkShift = 24;
 
-        /**
-         * Get one of a node's 256 links. It will not return null. If there is
-         * no link, then a link is manufactured.
-         *
-         * @param cell
-         *            A integer between 0 and 255.
-         * @return
-         */
-        public Node vet(int cell) {
-            Node node = get(cell);
-            if (node == null) {
-                node = new Node();
-                set(cell, node);
-            }
-            return node;
-        }
+    /**
+     * The integer of each node, or none.
+     */
+    private int[] nodeIntegers;
 
-        /**
-         * Get one of a node's 256 links. It will not return null. If there is
-         * no link, then a link is manufactured.
-         *
-         * @param cell
-         *            A byte.
-         * @return
-         */
-        public Node vet(byte cell) {
-            return vet(((int) cell) & 0xFF);
-        }
-    }
+    /**
+     * The number of nodes. Node 0 is the root.
+     */
+    private int nodes;
 
     private int[] froms;
     private int[] thrus;
-    private Node root;
     private Kim[] kims;
 
     /**
@@ -186,7 +85,97 @@ class TrieKeep extends Keep {
         this.froms = new int[this.capacity];
         this.thrus = new int[this.capacity];
         this.kims = new Kim[this.capacity];
-        this.root = new Node();
+        this.linkKeys = new int[256];
+        this.linkNodes = new int[256];
+        this.nodeIntegers = new int[64];
+        clear();
+    }
+
+    /**
+     * Remove all of the nodes but the root.
+     */
+    private void clear() {
+        Arrays.fill(this.linkKeys, -1);
+        this.links = 0;
+        this.nodeIntegers[0] = none;
+        this.nodes = 1;
+    }
+
+    /**
+     * Follow a node's link for a byte.
+     *
+     * @param node
+     *            A node.
+     * @param cell
+     *            A byte.
+     * @return The node it links to, or none.
+     */
+    private int get(int node, int cell) {
+        int key = (node << 8) | (cell & 0xFF);
+        int mask = this.linkKeys.length - 1;
+        int at = (key * 0x9E3779B9) >>> this.linkShift;
+        while (true) {
+            int k = this.linkKeys[at];
+            if (k == key) {
+                return this.linkNodes[at];
+            }
+            if (k == -1) {
+                return none;
+            }
+            at = (at + 1) & mask;
+        }
+    }
+
+    /**
+     * Add a link. The node must not already have a link for the byte.
+     */
+    private void link(int key, int node) {
+        int mask = this.linkKeys.length - 1;
+        int at = (key * 0x9E3779B9) >>> this.linkShift;
+        while (this.linkKeys[at] != -1) {
+            at = (at + 1) & mask;
+        }
+        this.linkKeys[at] = key;
+        this.linkNodes[at] = node;
+    }
+
+    /**
+     * Follow a node's link for a byte. It will not return none. If there is
+     * no link, then a new node and a link to it are manufactured.
+     *
+     * @param node
+     *            A node.
+     * @param cell
+     *            A byte.
+     * @return The node it links to.
+     */
+    private int vet(int node, int cell) {
+        int next = get(node, cell);
+        if (next == none) {
+            if (this.nodes == this.nodeIntegers.length) {
+                this.nodeIntegers = Arrays.copyOf(this.nodeIntegers,
+                        this.nodes * 2);
+            }
+            next = this.nodes;
+            this.nodes += 1;
+            this.nodeIntegers[next] = none;
+            if ((this.links + 1) * 2 > this.linkKeys.length) {
+                int[] keys = this.linkKeys;
+                int[] nodes = this.linkNodes;
+                this.linkKeys = new int[keys.length * 2];
+                this.linkNodes = new int[keys.length * 2];
+                this.linkShift -= 1;
+                Arrays.fill(this.linkKeys, -1);
+                for (int i = 0; i < keys.length; i += 1) {
+                    if (keys[i] != -1) {
+                        link(keys[i], nodes[i]);
+                    }
+                }
+            }
+            link((node << 8) | (cell & 0xFF), next);
+            this.links += 1;
+        }
+        return next;
     }
 
     /**
@@ -228,17 +217,16 @@ class TrieKeep extends Keep {
      * @return An integer
      */
     public int match(Kim kim, int from, int thru) {
-        Node node = this.root;
+        int node = 0;
         int best = none;
         for (int at = from; at < thru; at += 1) {
-            node = node.get(kim.get(at));
-            if (node == null) {
+            node = get(node, kim.get(at));
+            if (node == none) {
                 break;
             }
-            if (node.integer != none) {
-                best = node.integer;
+            if (this.nodeIntegers[node] != none) {
+                best = this.nodeIntegers[node];
             }
-            from += 1;
         }
         return best;
     }
@@ -263,7 +251,31 @@ class TrieKeep extends Keep {
                 result = false;
             }
         }
-        return result && this.root.postMortem(that.root);
+        return result && postMortem(0, that, 0);
+    }
+
+    /**
+     * Compare a node and the nodes below it with a node of another trie.
+     * Their integers must be equal, and they must have the same links.
+     */
+    private boolean postMortem(int node, TrieKeep that, int thatNode) {
+        if (this.nodeIntegers[node] != that.nodeIntegers[thatNode]) {
+            JSONzip.log("\nInteger " + this.nodeIntegers[node] + " <> "
+                    + that.nodeIntegers[thatNode]);
+            return false;
+        }
+        for (int i = 0; i < 256; i += 1) {
+            int next = get(node, i);
+            int thatNext = that.get(thatNode, i);
+            if ((next == none) != (thatNext == none)) {
+                JSONzip.log("\nMisalign " + i);
+                return false;
+            }
+            if (next != none && !postMortem(next, that, thatNext)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public void registerMany(Kim kim) {
@@ -279,12 +291,12 @@ class TrieKeep extends Keep {
                 len = JSONzip.maxSubstringLength;
             }
             len += from;
-            Node node = this.root;
+            int node = 0;
             for (int at = from; at < len; at += 1) {
-                Node next = node.vet(kim.get(at));
-                if (next.integer == none
+                int next = vet(node, kim.get(at));
+                if (this.nodeIntegers[next] == none
                         && at - from >= (JSONzip.minSubstringLength - 1)) {
-                    next.integer = this.length;
+                    this.nodeIntegers[next] = this.length;
                     this.uses[this.length] = 1;
                     this.kims[this.length] = kim;
                     this.froms[this.length] = from;
@@ -316,13 +328,13 @@ class TrieKeep extends Keep {
 
     public int registerOne(Kim kim, int from, int thru) {
         if (this.length < this.capacity) {
-            Node node = this.root;
+            int node = 0;
             for (int at = from; at < thru; at += 1) {
-                node = node.vet(kim.get(at));
+                node = vet(node, kim.get(at));
             }
-            if (node.integer == none) {
+            if (this.nodeIntegers[node] == none) {
                 int integer = this.length;
-                node.integer = integer;
+                this.nodeIntegers[node] = integer;
                 this.uses[integer] = 1;
                 this.kims[integer] = kim;
                 this.froms[integer] = from;
@@ -350,17 +362,16 @@ class TrieKeep extends Keep {
         if (this.capacity - this.length < JSONzip.substringLimit) {
             int from = 0;
             int to = 0;
-            this.root = new Node();
+            clear();
             while (from < this.capacity) {
                 if (this.uses[from] > 1) {
                     Kim kim = this.kims[from];
                     int thru = this.thrus[from];
-                    Node node = this.root;
+                    int node = 0;
                     for (int at = this.froms[from]; at < thru; at += 1) {
-                        Node next = node.vet(kim.get(at));
-                        node = next;
+                        node = vet(node, kim.get(at));
                     }
-                    node.integer = to;
+                    this.nodeIntegers[node] = to;
                     this.uses[to] = age(this.uses[from]);
                     this.froms[to] = this.froms[from];
                     this.thrus[to] = thru;
@@ -375,7 +386,7 @@ class TrieKeep extends Keep {
 
             if (this.capacity - to < JSONzip.substringLimit) {
                 this.power = 0;
-                this.root = new Node();
+                clear();
                 to = 0;
             }
             this.length = to;
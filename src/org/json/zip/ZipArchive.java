@@ -0,0 +1,377 @@
+package org.json.zip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/*
+ Copyright (c) 2013 JSON.org
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ The Software shall be used for Good, not Evil.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+/**
+ * A ZipArchive is a large collection of JSON values split into chunks that
+ * are compressed separately. Every chunk starts from the same Dictionary
+ * rather than from what the chunks before it learned, so chunks can be
+ * compressed and decompressed at the same time on a ForkJoinPool, and any
+ * one chunk can be read without reading the others.
+ *
+ * An archive starts with a header: the int 0x4A5A4131 ("JZA1"), the number
+ * of chunks, and for each chunk the number of values and the number of bytes
+ * in it, all as big endian ints. The chunks follow in order. Each chunk is a
+ * stream written by a ZipWriter and ended by close.
+ *
+ * Smaller chunks give more parallelism and cheaper random access. Larger
+ * chunks compress better, since each chunk only learns from its own values.
+ *
+ * @author JSON.org
+ * @version 2014-09-25
+ */
+public class ZipArchive {
+
+    /**
+     * The first four bytes of an archive.
+     */
+    public static final int magic = 0x4A5A4131;
+
+    /**
+     * The archive.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The number of values in each chunk.
+     */
+    private final int[] counts;
+
+    /**
+     * The Dictionary that every chunk starts from, or null.
+     */
+    private final Dictionary dictionary;
+
+    /**
+     * The offset in the buffer of each chunk, and then of the end.
+     */
+    private final int[] offsets;
+
+    /**
+     * The number of values before each chunk, and then the total.
+     */
+    private final int[] starts;
+
+    /**
+     * The work to be done on each chunk.
+     */
+    private interface Job {
+        void chunk(int chunk);
+    }
+
+    /**
+     * Do a Job on each chunk in a range, splitting the range in two until it
+     * is a single chunk.
+     */
+    private static final class Task extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final Job job;
+        private final int thru;
+
+        Task(Job job, int from, int thru) {
+            this.from = from;
+            this.job = job;
+            this.thru = thru;
+        }
+
+        protected void compute() {
+            if (this.thru - this.from == 1) {
+                this.job.chunk(this.from);
+            } else if (this.thru - this.from > 1) {
+                int middle = (this.from + this.thru) >>> 1;
+                invokeAll(new Task(this.job, this.from, middle),
+                        new Task(this.job, middle, this.thru));
+            }
+        }
+    }
+
+    /**
+     * Open an archive. The chunks are not read until they are needed.
+     *
+     * @param buffer
+     *            The remaining bytes of the buffer are the archive. Its
+     *            position is not changed.
+     * @param dictionary
+     *            The Dictionary that the archive was written with, or null.
+     * @throws JSONException
+     *             If the header is not well formed.
+     */
+    public ZipArchive(ByteBuffer buffer, Dictionary dictionary)
+            throws JSONException {
+        this.buffer = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+        this.dictionary = dictionary;
+        int length = this.buffer.limit();
+        if (length < 8 || this.buffer.getInt(0) != magic) {
+            throw new JSONException("Not a JSONzip archive.");
+        }
+        int chunks = this.buffer.getInt(4);
+        if (chunks < 0 || chunks > (length - 8) / 8) {
+            throw new JSONException("Bad JSONzip archive header.");
+        }
+        this.counts = new int[chunks];
+        this.offsets = new int[chunks + 1];
+        this.starts = new int[chunks + 1];
+        long offset = 8 + 8L * chunks;
+        long start = 0;
+        for (int i = 0; i < chunks; i += 1) {
+            int count = this.buffer.getInt(8 + 8 * i);
+            int size = this.buffer.getInt(12 + 8 * i);
+            if (count < 0 || size < 0) {
+                throw new JSONException("Bad JSONzip archive header.");
+            }
+            this.counts[i] = count;
+            this.offsets[i] = (int) offset;
+            this.starts[i] = (int) start;
+            offset += size;
+            start += count;
+            if (offset > length || start > Integer.MAX_VALUE) {
+                throw new JSONException("Truncated JSONzip archive.");
+            }
+        }
+        this.offsets[chunks] = (int) offset;
+        this.starts[chunks] = (int) start;
+    }
+
+    /**
+     * Read all of the values of one chunk.
+     *
+     * @param chunk
+     *            The number of the chunk, from 0.
+     * @return A JSONArray of the chunk's values.
+     * @throws JSONException
+     *             If the chunk cannot be read.
+     */
+    public JSONArray chunk(int chunk) throws JSONException {
+        ByteBuffer bytes = this.buffer.duplicate();
+        bytes.limit(this.offsets[chunk + 1]);
+        bytes.position(this.offsets[chunk]);
+        ZipReader reader = new ZipReader(bytes, this.dictionary);
+        JSONArray values = new JSONArray();
+        while (reader.hasNext()) {
+            values.put(reader.next());
+        }
+        if (values.length() != this.counts[chunk]) {
+            throw new JSONException("Bad JSONzip archive chunk " + chunk);
+        }
+        return values;
+    }
+
+    /**
+     * Get the number of the chunk that holds a value.
+     *
+     * @param index
+     *            The index of a value, from 0.
+     * @return The number of its chunk.
+     */
+    public int chunkOf(int index) {
+        if (index < 0 || index >= this.size()) {
+            throw new IndexOutOfBoundsException("Index " + index);
+        }
+        int low = 0;
+        int high = this.counts.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (this.starts[middle] <= index) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Read one value. Its whole chunk is decompressed.
+     *
+     * @param index
+     *            The index of the value, from 0.
+     * @return The value.
+     * @throws JSONException
+     *             If the chunk cannot be read.
+     */
+    public Object get(int index) throws JSONException {
+        int chunk = this.chunkOf(index);
+        return this.chunk(chunk).get(index - this.starts[chunk]);
+    }
+
+    /**
+     * Get the number of chunks.
+     */
+    public int length() {
+        return this.counts.length;
+    }
+
+    /**
+     * Read all of the values, decompressing the chunks in parallel.
+     *
+     * @param pool
+     *            The pool to do the work in.
+     * @return A JSONArray of all of the values, in order.
+     * @throws JSONException
+     *             If a chunk cannot be read.
+     */
+    public JSONArray readAll(ForkJoinPool pool) throws JSONException {
+        final JSONArray[] chunks = new JSONArray[this.length()];
+        pool.invoke(new Task(new Job() {
+            public void chunk(int chunk) {
+                chunks[chunk] = ZipArchive.this.chunk(chunk);
+            }
+        }, 0, chunks.length));
+        JSONArray values = new JSONArray();
+        for (int i = 0; i < chunks.length; i += 1) {
+            for (int j = 0; j < chunks[i].length(); j += 1) {
+                values.put(chunks[i].get(j));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Read all of the values, decompressing the chunks in parallel in the
+     * common pool.
+     *
+     * @return A JSONArray of all of the values, in order.
+     * @throws JSONException
+     *             If a chunk cannot be read.
+     */
+    public JSONArray readAll() throws JSONException {
+        return this.readAll(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Get the number of values.
+     */
+    public int size() {
+        return this.starts[this.counts.length];
+    }
+
+    /**
+     * Get the number of values in a chunk.
+     *
+     * @param chunk
+     *            The number of the chunk, from 0.
+     */
+    public int size(int chunk) {
+        return this.counts[chunk];
+    }
+
+    /**
+     * Write an archive, compressing the chunks in parallel.
+     *
+     * @param values
+     *            A JSONArray of JSONObjects and JSONArrays.
+     * @param chunkSize
+     *            The number of values in each chunk but the last.
+     * @param dictionary
+     *            The Dictionary that every chunk starts from, or null.
+     * @param out
+     *            The destination of the archive. It is not closed.
+     * @param pool
+     *            The pool to do the work in.
+     * @throws IOException
+     *             If the archive cannot be written.
+     * @throws JSONException
+     *             If a value cannot be compressed.
+     */
+    public static void write(final JSONArray values, final int chunkSize,
+            final Dictionary dictionary, OutputStream out, ForkJoinPool pool)
+            throws IOException {
+        if (chunkSize <= 0) {
+            throw new JSONException("Bad chunk size " + chunkSize);
+        }
+        final int length = values.length();
+        final byte[][] chunks = new byte[(length + chunkSize - 1)
+                / chunkSize][];
+        pool.invoke(new Task(new Job() {
+            public void chunk(int chunk) {
+                int from = chunk * chunkSize;
+                int thru = Math.min(from + chunkSize, length);
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                ZipWriter writer = new ZipWriter(bytes, dictionary);
+                try {
+                    for (int i = from; i < thru; i += 1) {
+                        Object value = values.get(i);
+                        if (value instanceof JSONObject) {
+                            writer.write((JSONObject) value);
+                        } else {
+                            writer.write(values.getJSONArray(i));
+                        }
+                    }
+                    writer.close();
+                } catch (IOException e) {
+                    throw new JSONException(e);
+                }
+                chunks[chunk] = bytes.toByteArray();
+            }
+        }, 0, chunks.length));
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(magic);
+        data.writeInt(chunks.length);
+        for (int i = 0; i < chunks.length; i += 1) {
+            data.writeInt(Math.min(chunkSize, length - i * chunkSize));
+            data.writeInt(chunks[i].length);
+        }
+        for (int i = 0; i < chunks.length; i += 1) {
+            data.write(chunks[i]);
+        }
+        data.flush();
+    }
+
+    /**
+     * Write an archive, compressing the chunks in parallel in the common
+     * pool.
+     *
+     * @param values
+     *            A JSONArray of JSONObjects and JSONArrays.
+     * @param chunkSize
+     *            The number of values in each chunk but the last.
+     * @param dictionary
+     *            The Dictionary that every chunk starts from, or null.
+     * @param out
+     *            The destination of the archive. It is not closed.
+     * @throws IOException
+     *             If the archive cannot be written.
+     * @throws JSONException
+     *             If a value cannot be compressed.
+     */
+    public static void write(JSONArray values, int chunkSize,
+            Dictionary dictionary, OutputStream out) throws IOException {
+        write(values, chunkSize, dictionary, out, ForkJoinPool.commonPool());
+    }
+}
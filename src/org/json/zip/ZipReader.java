@@ -0,0 +1,208 @@
+package org.json.zip;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.json.JSONException;
+
+/*
+ Copyright (c) 2013 JSON.org
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ The Software shall be used for Good, not Evil.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+/**
+ * A ZipReader reads the sequence of JSON values written by a ZipWriter, one
+ * value at a time. The stream may end either at the end written by close or
+ * at a flush point, so a log that is still being written can be read up to
+ * its last flush.
+ *
+ * <pre>
+ * ZipReader zip = new ZipReader(in);
+ * while (zip.hasNext()) {
+ *     Object value = zip.next();
+ * }
+ * </pre>
+ *
+ * @author JSON.org
+ * @version 2014-09-25
+ */
+public class ZipReader {
+
+    /**
+     * Is the reader at a whole byte, just after a flush point or at the
+     * start, where the stream may end?
+     */
+    private boolean aligned = true;
+
+    /**
+     * The bits, when reading from a ByteBuffer.
+     */
+    private final BitBufferReader buffer;
+
+    /**
+     * The number of bytes in the ByteBuffer.
+     */
+    private final int bufferLength;
+
+    /**
+     * The decompressor that all of the values share.
+     */
+    private final Decompressor decompressor;
+
+    /**
+     * Has the end of the stream been read?
+     */
+    private boolean done = false;
+
+    /**
+     * The source of the stream, when reading from an InputStream.
+     */
+    private final InputStream in;
+
+    /**
+     * Has the bit before a value been read?
+     */
+    private boolean ready = false;
+
+    /**
+     * Make a ZipReader that reads from an InputStream.
+     *
+     * @param in
+     *            The source of the stream.
+     */
+    public ZipReader(InputStream in) {
+        this(in, null);
+    }
+
+    /**
+     * Make a ZipReader that reads from an InputStream, starting from a
+     * Dictionary.
+     *
+     * @param in
+     *            The source of the stream.
+     * @param dictionary
+     *            The Dictionary that the stream was written with, or null.
+     */
+    public ZipReader(InputStream in, Dictionary dictionary) {
+        this.in = in;
+        this.buffer = null;
+        this.bufferLength = 0;
+        this.decompressor = new Decompressor(null, dictionary);
+    }
+
+    /**
+     * Make a ZipReader that reads the remaining bytes of a ByteBuffer. This
+     * is faster than reading from an InputStream.
+     *
+     * @param buffer
+     *            The stream.
+     */
+    public ZipReader(ByteBuffer buffer) {
+        this(buffer, null);
+    }
+
+    /**
+     * Make a ZipReader that reads the remaining bytes of a ByteBuffer,
+     * starting from a Dictionary.
+     *
+     * @param buffer
+     *            The stream.
+     * @param dictionary
+     *            The Dictionary that the stream was written with, or null.
+     */
+    public ZipReader(ByteBuffer buffer, Dictionary dictionary) {
+        this.in = null;
+        this.bufferLength = buffer.remaining();
+        this.buffer = new BitBufferReader(buffer);
+        this.decompressor = new Decompressor(this.buffer, dictionary);
+    }
+
+    /**
+     * Get the decompressor, for postMortem.
+     */
+    Decompressor decompressor() {
+        return this.decompressor;
+    }
+
+    /**
+     * Determine if another value remains, skipping any flush points.
+     *
+     * @return true if next will return a value.
+     * @throws JSONException
+     *             If the stream cannot be read.
+     */
+    public boolean hasNext() throws JSONException {
+        try {
+            while (!this.ready && !this.done) {
+                if (this.aligned) {
+                    if (this.buffer != null) {
+                        if (this.buffer.position() >= this.bufferLength) {
+                            this.done = true;
+                            break;
+                        }
+                    } else {
+
+// The stream may end here, so look at the next byte before making a new
+// BitInputStream that starts with it.
+
+                        int first = this.in.read();
+                        if (first < 0) {
+                            this.done = true;
+                            break;
+                        }
+                        this.decompressor.bitreader =
+                                new BitInputStream(this.in, first);
+                    }
+                    this.aligned = false;
+                }
+                BitReader bitreader = this.decompressor.bitreader;
+                if (bitreader.bit()) {
+                    this.ready = true;
+                } else {
+                    boolean flush = bitreader.bit();
+                    bitreader.pad(8);
+                    this.aligned = true;
+                    this.done = !flush;
+                }
+            }
+            return this.ready;
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+    /**
+     * Read the next value.
+     *
+     * @return A JSONObject or JSONArray.
+     * @throws JSONException
+     *             If there are no more values, or the stream cannot be read.
+     */
+    public Object next() throws JSONException {
+        if (!this.hasNext()) {
+            throw new JSONException("No more values.");
+        }
+        this.ready = false;
+        return this.decompressor.unzip();
+    }
+}
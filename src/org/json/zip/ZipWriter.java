@@ -0,0 +1,178 @@
+package org.json.zip;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/*
+ Copyright (c) 2013 JSON.org
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ The Software shall be used for Good, not Evil.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+/**
+ * A ZipWriter writes a sequence of JSON values to one JSONzip stream, such as
+ * a log with one record per event. All of the values share one Compressor, so
+ * what it learns from one value makes the next one smaller, and no more than
+ * one value needs to be in memory at a time.
+ *
+ * Each value is preceded by a 1 bit. A 0 bit is followed by a 1 bit for a
+ * flush point or a 0 bit for the end of the stream, and then by padding to a
+ * whole byte. At a flush point, every value written so far can be read by a
+ * ZipReader, so a stream can be read while it is still being written. A
+ * stream that ends at a flush point instead of at an end is still complete.
+ *
+ * <pre>
+ * ZipWriter zip = new ZipWriter(out);
+ * zip.write(record);
+ * zip.flush();
+ * zip.close();
+ * </pre>
+ *
+ * @author JSON.org
+ * @version 2014-09-25
+ */
+public class ZipWriter implements Closeable, Flushable {
+
+    /**
+     * The bits of the stream.
+     */
+    private final BitOutputStream bitwriter;
+
+    /**
+     * The compressor that all of the values share.
+     */
+    private final Compressor compressor;
+
+    /**
+     * Has the end been written?
+     */
+    private boolean closed = false;
+
+    /**
+     * The destination of the stream.
+     */
+    private final OutputStream out;
+
+    /**
+     * Make a ZipWriter.
+     *
+     * @param out
+     *            The destination of the stream.
+     */
+    public ZipWriter(OutputStream out) {
+        this(out, null);
+    }
+
+    /**
+     * Make a ZipWriter that starts from a Dictionary. The stream can only be
+     * read by a ZipReader with the same Dictionary.
+     *
+     * @param out
+     *            The destination of the stream.
+     * @param dictionary
+     *            The learned starting state, or null.
+     */
+    public ZipWriter(OutputStream out, Dictionary dictionary) {
+        this.out = out;
+        this.bitwriter = new BitOutputStream(out);
+        this.compressor = new Compressor(this.bitwriter, dictionary);
+    }
+
+    /**
+     * Write the end of the stream, and close the destination.
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        if (!this.closed) {
+            this.closed = true;
+            this.bitwriter.zero();
+            this.bitwriter.zero();
+            this.bitwriter.pad(8);
+        }
+        this.out.close();
+    }
+
+    /**
+     * Write a flush point, and flush the destination. All of the values
+     * written so far can then be read.
+     *
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        this.open();
+        this.bitwriter.zero();
+        this.bitwriter.one();
+        this.bitwriter.pad(8);
+    }
+
+    /**
+     * Get the compressor, for postMortem.
+     */
+    Compressor compressor() {
+        return this.compressor;
+    }
+
+    /**
+     * Make sure that the end has not been written.
+     */
+    private void open() throws IOException {
+        if (this.closed) {
+            throw new IOException("ZipWriter is closed.");
+        }
+    }
+
+    /**
+     * Write a JSONArray.
+     *
+     * @param jsonarray
+     *            The next value.
+     * @throws IOException
+     * @throws JSONException
+     *             If the value cannot be compressed.
+     */
+    public void write(JSONArray jsonarray) throws IOException {
+        this.open();
+        this.bitwriter.one();
+        this.compressor.zip(jsonarray);
+    }
+
+    /**
+     * Write a JSONObject.
+     *
+     * @param jsonobject
+     *            The next value.
+     * @throws IOException
+     * @throws JSONException
+     *             If the value cannot be compressed.
+     */
+    public void write(JSONObject jsonobject) throws IOException {
+        this.open();
+        this.bitwriter.one();
+        this.compressor.zip(jsonobject);
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2014 Samuel A. Rebelsky.  All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import edu.grinnell.glimmer.ushahidi.UshahidiUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.json.JSONByteWriter;
+import org.json.JSONObject;
+
+/**
+ * Check that JSONByteWriter writes the same text as JSONObject.toString,
+ * whatever the size of its buffer.  We write random incidents and a few
+ * objects with awkward keys through buffers of several sizes, including
+ * ones small enough that nearly every key lands on a flush.
+ *
+ * @version     0.1 of 25 September 2014
+ * @author      Samuel A. Rebelsky
+ */
+public class ByteWriterExperiment
+{
+  // +-----------+------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The buffer sizes to try.
+   */
+  static final int[] SIZES = { 16, 64, 256, 8192 };
+
+  /**
+   * The number of random incidents to write.
+   */
+  static final int INCIDENTS = 100;
+
+  // +------+-----------------------------------------------------------
+  // | Main |
+  // +------+
+
+  /**
+   * Write the objects through each buffer size and compare.
+   */
+  public static void main(String[] args)
+    throws Exception
+  {
+    JSONObject[] objects = new JSONObject[INCIDENTS + 3];
+    for (int i = 0; i < INCIDENTS; i++)
+      objects[i] = new JSONObject(UshahidiUtils.randomIncident().toJSONString());
+
+    // A long value followed by a key that must be escaped, which is
+    // what once overran a 64-byte buffer.
+    StringBuilder padding = new StringBuilder();
+    for (int i = 0; i < 60; i++)
+      padding.append('x');
+    objects[INCIDENTS] = new JSONObject().put("a", padding.toString())
+                                         .put("\u0001", 1);
+    objects[INCIDENTS + 1] = new JSONObject().put("\u0001\u0002\u0003\u0004"
+                                                  + "\u0005\u0006\u0007", 2)
+                                             .put("</\u2028 \u00e9\ud83d\ude00",
+                                                  padding.toString());
+    objects[INCIDENTS + 2] = new JSONObject().put(padding.toString(), "\u0001");
+
+    int failures = 0;
+    for (int size : SIZES)
+      {
+        for (int i = 0; i < objects.length; i++)
+          {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            JSONByteWriter writer = new JSONByteWriter(bytes, size);
+            // Twice, so that the second pass uses the cached keys.
+            writer.write(objects[i]).separator('\n');
+            writer.write(objects[i]).separator('\n');
+            writer.flush();
+            String expected = objects[i].toString() + "\n";
+            expected = expected + expected;
+            String actual = new String(bytes.toByteArray(),
+                                       StandardCharsets.UTF_8);
+            if (!expected.equals(actual))
+              {
+                System.out.println("Buffer of " + size + ", object " + i
+                                   + ": expected " + expected + " but got "
+                                   + actual);
+                failures++;
+              } // if
+          } // for each object
+      } // for each size
+    System.out.println(failures + " failures in "
+                       + (SIZES.length * objects.length) + " objects");
+  } // main(String[])
+} // ByteWriterExperiment
@@ -0,0 +1,397 @@
+/**
+ * Copyright (c) 2014 Samuel A. Rebelsky.  All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import edu.grinnell.glimmer.ushahidi.UshahidiUtils;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.zip.BitBufferReader;
+import org.json.zip.BitBufferWriter;
+import org.json.zip.Compressor;
+import org.json.zip.Decompressor;
+import org.json.zip.Dictionary;
+
+/**
+ * Measure JSONzip against gzip and plain JSON text on corpora of
+ * random incidents.  For each corpus size (given on the command line,
+ * or 10, 100, 1000, and 10000 by default) and each format, we report
+ * how fast incidents are written and read (in MB of JSON text per
+ * second), how many bits each incident takes, and how many bytes are
+ * allocated per incident.  Every round trip is checked: the values read
+ * must match the values written and, for JSONzip, the compressor and
+ * decompressor must pass postMortem.
+ *
+ * @version     0.1 of 25 September 2014
+ * @author      Samuel A. Rebelsky
+ */
+public class ZipBenchmarkExperiment
+{
+  // +-------+----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * This is not a careful benchmark harness.  We warm up with a few
+   * untimed rounds and then report the average of the timed rounds,
+   * which is enough to compare formats on one machine.  Run it with
+   * a fixed heap (say, -Xms1g -Xmx1g) to keep collections from
+   * dominating the small corpora.
+   *
+   * Each format reads back into JSONObjects, so the numbers for gzip
+   * and JSON text include parsing.  All of the incidents in a corpus
+   * are one session (one compressor, one gzip stream).
+   *
+   * The allocation counts come from com.sun.management.ThreadMXBean
+   * and are omitted on virtual machines that do not provide it.
+   */
+
+  // +-----------+------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The corpus sizes used when none are given.
+   */
+  static final int[] SIZES = { 10, 100, 1000, 10000 };
+
+  /**
+   * The number of untimed rounds.
+   */
+  static final int WARMUP = 5;
+
+  /**
+   * The number of timed rounds.
+   */
+  static final int ROUNDS = 10;
+
+  /**
+   * The number of incidents used to train the dictionary.
+   */
+  static final int SAMPLES = 200;
+
+  // +---------+--------------------------------------------------------
+  // | Formats |
+  // +---------+
+
+  /**
+   * One way of writing and reading a corpus.
+   */
+  static abstract class Format
+  {
+    /**
+     * The name of the format, for the report.
+     */
+    String name;
+
+    Format(String name)
+    {
+      this.name = name;
+    } // Format(String)
+
+    /**
+     * Write the incidents.
+     */
+    abstract byte[] write(JSONObject[] incidents)
+      throws Exception;
+
+    /**
+     * Read the incidents back.
+     */
+    abstract JSONObject[] read(byte[] bytes, int count)
+      throws Exception;
+
+    /**
+     * Check anything beyond the values themselves after a round
+     * trip.  By default, there is nothing more to check.
+     */
+    boolean check()
+    {
+      return true;
+    } // check()
+  } // class Format
+
+  /**
+   * Plain JSON text, one incident per line.
+   */
+  static class Text
+    extends Format
+  {
+    Text()
+    {
+      super("json");
+    } // Text()
+
+    byte[] write(JSONObject[] incidents)
+      throws Exception
+    {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      Writer out = new OutputStreamWriter(bytes, StandardCharsets.UTF_8);
+      for (JSONObject incident : incidents)
+        {
+          incident.write(out);
+          out.write('\n');
+        } // for
+      out.close();
+      return bytes.toByteArray();
+    } // write(JSONObject[])
+
+    JSONObject[] read(byte[] bytes, int count)
+      throws Exception
+    {
+      return readLines(new ByteArrayInputStream(bytes), count);
+    } // read(byte[], int)
+  } // class Text
+
+  /**
+   * JSON text, one incident per line, compressed with gzip.
+   */
+  static class Gzip
+    extends Format
+  {
+    Gzip()
+    {
+      super("gzip");
+    } // Gzip()
+
+    byte[] write(JSONObject[] incidents)
+      throws Exception
+    {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      Writer out = new OutputStreamWriter(new GZIPOutputStream(bytes),
+                                          StandardCharsets.UTF_8);
+      for (JSONObject incident : incidents)
+        {
+          incident.write(out);
+          out.write('\n');
+        } // for
+      out.close();
+      return bytes.toByteArray();
+    } // write(JSONObject[])
+
+    JSONObject[] read(byte[] bytes, int count)
+      throws Exception
+    {
+      return readLines(new GZIPInputStream(new ByteArrayInputStream(bytes)),
+                       count);
+    } // read(byte[], int)
+  } // class Gzip
+
+  /**
+   * JSONzip, optionally starting from a dictionary.
+   */
+  static class Zip
+    extends Format
+  {
+    /**
+     * The dictionary, or null.
+     */
+    Dictionary dictionary;
+
+    /**
+     * The compressor and decompressor of the latest round trip.
+     */
+    Compressor compressor;
+    Decompressor decompressor;
+
+    Zip(Dictionary dictionary)
+    {
+      super((dictionary == null) ? "jsonzip" : "jsonzip+dict");
+      this.dictionary = dictionary;
+    } // Zip(Dictionary)
+
+    byte[] write(JSONObject[] incidents)
+      throws Exception
+    {
+      BitBufferWriter bits = new BitBufferWriter();
+      this.compressor = new Compressor(bits, this.dictionary);
+      for (JSONObject incident : incidents)
+        this.compressor.zip(incident);
+      this.compressor.flush();
+      return bits.toByteArray();
+    } // write(JSONObject[])
+
+    JSONObject[] read(byte[] bytes, int count)
+      throws Exception
+    {
+      this.decompressor =
+          new Decompressor(new BitBufferReader(bytes), this.dictionary);
+      JSONObject[] incidents = new JSONObject[count];
+      for (int i = 0; i < count; i++)
+        incidents[i] = (JSONObject) this.decompressor.unzip();
+      return incidents;
+    } // read(byte[], int)
+
+    boolean check()
+    {
+      return this.compressor.postMortem(this.decompressor);
+    } // check()
+  } // class Zip
+
+  // +--------+---------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The source of allocation counts, or null if there is none.
+   */
+  static com.sun.management.ThreadMXBean threads;
+
+  // +------+-----------------------------------------------------------
+  // | Main |
+  // +------+
+
+  /**
+   * Run the benchmark for the corpus sizes given on the command line.
+   */
+  public static void main(String[] args)
+    throws Exception
+  {
+    int[] sizes = SIZES;
+    if (args.length > 0)
+      {
+        sizes = new int[args.length];
+        for (int i = 0; i < args.length; i++)
+          sizes[i] = Integer.parseInt(args[i]);
+      } // if
+
+    if (ManagementFactory.getThreadMXBean() instanceof
+        com.sun.management.ThreadMXBean)
+      {
+        threads = (com.sun.management.ThreadMXBean)
+            ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+      } // if
+
+    JSONArray samples = new JSONArray();
+    for (int i = 0; i < SAMPLES; i++)
+      samples.put(new JSONObject(UshahidiUtils.randomIncident().toJSONString()));
+    Format[] formats = { new Text(), new Gzip(), new Zip(null),
+                         new Zip(Dictionary.train(samples)) };
+
+    System.out.printf("%8s %-13s %10s %10s %10s %10s %10s%n",
+                      "size", "format", "bytes", "bits/inc",
+                      "write MB/s", "read MB/s", "alloc B/inc");
+    for (int size : sizes)
+      {
+        JSONObject[] corpus = new JSONObject[size];
+        for (int i = 0; i < size; i++)
+          corpus[i] =
+              new JSONObject(UshahidiUtils.randomIncident().toJSONString());
+        long text = new Text().write(corpus).length;
+        for (Format format : formats)
+          run(format, corpus, text);
+      } // for
+  } // main(String[])
+
+  // +-----------+------------------------------------------------------
+  // | Utilities |
+  // +-----------+
+
+  /**
+   * Get the number of bytes allocated so far by this thread, or 0 if
+   * we cannot tell.
+   */
+  static long allocated()
+  {
+    if (threads == null)
+      return 0;
+    return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+  } // allocated()
+
+  /**
+   * Read lines of JSON text.
+   */
+  static JSONObject[] readLines(java.io.InputStream in, int count)
+    throws Exception
+  {
+    BufferedReader lines =
+        new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    JSONObject[] incidents = new JSONObject[count];
+    for (int i = 0; i < count; i++)
+      incidents[i] = new JSONObject(lines.readLine());
+    return incidents;
+  } // readLines(InputStream, int)
+
+  /**
+   * Measure one format on one corpus and print a line of the report.
+   *
+   * @param format
+   *            The format.
+   * @param corpus
+   *            The incidents.
+   * @param text
+   *            The number of bytes of JSON text in the corpus, which
+   *            is what the rates are measured against.
+   * @exception Exception
+   *            If a round trip fails its check.
+   */
+  static void run(Format format, JSONObject[] corpus, long text)
+    throws Exception
+  {
+    long writeTime = 0;
+    long readTime = 0;
+    long allocation = 0;
+    byte[] bytes = null;
+    for (int round = -WARMUP; round < ROUNDS; round++)
+      {
+        long allocatedBefore = allocated();
+        long start = System.nanoTime();
+        bytes = format.write(corpus);
+        long middle = System.nanoTime();
+        JSONObject[] result = format.read(bytes, corpus.length);
+        long end = System.nanoTime();
+        long allocatedAfter = allocated();
+
+        for (int i = 0; i < corpus.length; i++)
+          {
+            if (!corpus[i].toString().equals(result[i].toString()))
+              throw new Exception(format.name + " changed incident " + i
+                                  + ": " + result[i]);
+          } // for
+        if (!format.check())
+          throw new Exception(format.name + " failed postMortem");
+
+        if (round >= 0)
+          {
+            writeTime += middle - start;
+            readTime += end - middle;
+            allocation += allocatedAfter - allocatedBefore;
+          } // if
+      } // for
+
+    double megabytes = (double) text * ROUNDS / 1000000;
+    System.out.printf("%8d %-13s %10d %10.1f %10.2f %10.2f %10s%n",
+                      corpus.length, format.name, bytes.length,
+                      (double) bytes.length * 8 / corpus.length,
+                      megabytes / (writeTime / 1e9),
+                      megabytes / (readTime / 1e9),
+                      (threads == null)
+                      ? "-"
+                      : Long.toString(allocation / ROUNDS / corpus.length));
+  } // run(Format, JSONObject[], long)
+} // ZipBenchmarkExperiment